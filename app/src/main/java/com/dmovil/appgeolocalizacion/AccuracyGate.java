@@ -0,0 +1,36 @@
+package com.dmovil.appgeolocalizacion;
+
+public class AccuracyGate implements FixFilter {
+
+    //Precision que se asume cuando la ubicación no la trae (algunas ubicaciones de red o
+    // reproducidas); la usa despues el filtro de Kalman como error de la medicion.
+    public static final float DEFAULT_UNKNOWN_ACCURACY = 50f;
+
+    private final float mMaxAccuracy;
+    private final float mUnknownAccuracy;
+
+    public AccuracyGate(float maxAccuracyMeters) {
+        this(maxAccuracyMeters, DEFAULT_UNKNOWN_ACCURACY);
+    }
+
+    public AccuracyGate(float maxAccuracyMeters, float unknownAccuracyMeters) {
+        mMaxAccuracy = maxAccuracyMeters;
+        mUnknownAccuracy = unknownAccuracyMeters;
+    }
+
+    @Override
+    public boolean accept(Fix fix) {
+        //Descarta las ubicaciones cuyo radio de precision es mayor que el limite (por ejemplo
+        // los saltos del proveedor de red). Una precision de cero significa que no se conoce:
+        // esas ubicaciones pasan con la precision supuesta en lugar de descartarse.
+        if (fix.accuracy <= 0) {
+            fix.accuracy = mUnknownAccuracy;
+            return true;
+        }
+        return fix.accuracy <= mMaxAccuracy;
+    }
+
+    @Override
+    public void reset() {
+    }
+}
@@ -0,0 +1,41 @@
+package com.dmovil.appgeolocalizacion;
+
+import android.content.Context;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+
+public final class AddressCache {
+
+    //Direcciones por tesela de geohash (unos 150 x 150 m): las ultimas en memoria y muchas
+    // mas en disco, asi que volver a una zona conocida no repite la busqueda.
+    public static final int MEMORY_CAPACITY = 256;
+    public static final int DISK_CAPACITY = 4096;
+
+    private static TileCache<String> sInstance;
+
+    private AddressCache() {
+    }
+
+    public static synchronized TileCache<String> get(Context context) {
+        //Una sola cache para toda la aplicación; la usan la pantalla principal y el mapa.
+        if (sInstance == null) {
+            sInstance = new TileCache<>(Geohash.DEFAULT_BITS, MEMORY_CAPACITY,
+                    new File(context.getApplicationContext().getCacheDir(), "address-tiles"),
+                    DISK_CAPACITY, new TileCache.Codec<String>() {
+                        @Override
+                        public void write(DataOutputStream out, String value) throws IOException {
+                            out.writeUTF(value);
+                        }
+
+                        @Override
+                        public String read(DataInputStream in) throws IOException {
+                            return in.readUTF();
+                        }
+                    });
+        }
+        return sInstance;
+    }
+}
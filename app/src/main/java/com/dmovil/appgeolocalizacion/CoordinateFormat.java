@@ -0,0 +1,77 @@
+package com.dmovil.appgeolocalizacion;
+
+public final class CoordinateFormat {
+
+    //Decimales con los que se muestran las coordenadas (unos 10 cm).
+    public static final int DISPLAY_DECIMALS = 6;
+    //Tamaño de buffer suficiente para cualquier valor con hasta 9 decimales.
+    public static final int MAX_LENGTH = 32;
+
+    private static final long[] POWERS_OF_TEN = {
+            1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L, 100000000L, 1000000000L
+    };
+
+    private CoordinateFormat() {
+    }
+
+    public static long quantize(double value, int decimals) {
+        //Valor entero a la precision que se muestra; dos valores con el mismo resultado se ven
+        // igual en pantalla.
+        return Math.round(value * POWERS_OF_TEN[decimals]);
+    }
+
+    public static int format(long quantized, int decimals, char[] buffer) {
+        //Escribe el valor ya cuantizado con punto decimal fijo al inicio de buffer y devuelve
+        // el numero de caracteres, sin crear objetos (a diferencia de String.format).
+        boolean negative = quantized < 0;
+        long value = negative ? -quantized : quantized;
+        long integer = value / POWERS_OF_TEN[decimals];
+        long fraction = value % POWERS_OF_TEN[decimals];
+
+        int integerDigits = 1;
+        for (long i = integer; i >= 10; i /= 10) {
+            integerDigits++;
+        }
+        int length = (negative ? 1 : 0) + integerDigits + (decimals > 0 ? decimals + 1 : 0);
+
+        int pos = length;
+        for (int i = 0; i < decimals; i++) {
+            buffer[--pos] = (char) ('0' + fraction % 10);
+            fraction /= 10;
+        }
+        if (decimals > 0) {
+            buffer[--pos] = '.';
+        }
+        do {
+            buffer[--pos] = (char) ('0' + integer % 10);
+            integer /= 10;
+        } while (integer > 0);
+        if (negative) {
+            buffer[--pos] = '-';
+        }
+        return length;
+    }
+
+    public static int format(double value, int decimals, char[] buffer) {
+        return format(quantize(value, decimals), decimals, buffer);
+    }
+
+    public static StringBuilder append(StringBuilder builder, double value, int decimals) {
+        //Agrega el valor a un StringBuilder reutilizable.
+        long quantized = quantize(value, decimals);
+        if (quantized < 0) {
+            builder.append('-');
+            quantized = -quantized;
+        }
+        builder.append(quantized / POWERS_OF_TEN[decimals]);
+        if (decimals > 0) {
+            builder.append('.');
+            long fraction = quantized % POWERS_OF_TEN[decimals];
+            for (int i = decimals - 1; i > 0 && fraction < POWERS_OF_TEN[i]; i--) {
+                builder.append('0');
+            }
+            builder.append(fraction);
+        }
+        return builder;
+    }
+}
@@ -0,0 +1,86 @@
+package com.dmovil.appgeolocalizacion;
+
+import android.view.Choreographer;
+import android.widget.TextView;
+
+public class CoordinatesRenderer implements Choreographer.FrameCallback {
+
+    //Todos los metodos se llaman en el hilo principal.
+    private final TextView mLatitudeView;
+    private final TextView mLongitudeView;
+    private final TextView mAddressView;
+    private final int mDecimals;
+
+    //Buffers reutilizados para escribir las coordenadas sin crear cadenas.
+    private final char[] mLatitudeChars = new char[CoordinateFormat.MAX_LENGTH];
+    private final char[] mLongitudeChars = new char[CoordinateFormat.MAX_LENGTH];
+
+    //Valores que se muestran y valores pendientes, a la precision de pantalla.
+    private long mShownLatitude = Long.MIN_VALUE;
+    private long mShownLongitude = Long.MIN_VALUE;
+    private String mShownAddress;
+    private long mPendingLatitude = Long.MIN_VALUE;
+    private long mPendingLongitude = Long.MIN_VALUE;
+    private String mPendingAddress;
+
+    private boolean mFrameScheduled;
+
+    public CoordinatesRenderer(TextView latitudeView, TextView longitudeView,
+                               TextView addressView, int decimals) {
+        mLatitudeView = latitudeView;
+        mLongitudeView = longitudeView;
+        mAddressView = addressView;
+        mDecimals = decimals;
+    }
+
+    public void setCoordinates(double latitude, double longitude) {
+        //Si a la precision de pantalla no cambio nada no se programa ningun cuadro.
+        mPendingLatitude = CoordinateFormat.quantize(latitude, mDecimals);
+        mPendingLongitude = CoordinateFormat.quantize(longitude, mDecimals);
+        if (mPendingLatitude != mShownLatitude || mPendingLongitude != mShownLongitude) {
+            scheduleFrame();
+        }
+    }
+
+    public void setAddress(String address) {
+        mPendingAddress = address;
+        if (address != null && !address.equals(mShownAddress)) {
+            scheduleFrame();
+        }
+    }
+
+    private void scheduleFrame() {
+        //Todos los cambios que lleguen antes del siguiente cuadro se aplican juntos.
+        if (!mFrameScheduled) {
+            mFrameScheduled = true;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        //Solo se tocan los TextView cuyo valor cambio, asi se evitan pasadas de layout.
+        mFrameScheduled = false;
+        if (mPendingLatitude != mShownLatitude) {
+            mShownLatitude = mPendingLatitude;
+            int length = CoordinateFormat.format(mShownLatitude, mDecimals, mLatitudeChars);
+            mLatitudeView.setText(mLatitudeChars, 0, length);
+        }
+        if (mPendingLongitude != mShownLongitude) {
+            mShownLongitude = mPendingLongitude;
+            int length = CoordinateFormat.format(mShownLongitude, mDecimals, mLongitudeChars);
+            mLongitudeView.setText(mLongitudeChars, 0, length);
+        }
+        if (mPendingAddress != null && !mPendingAddress.equals(mShownAddress)) {
+            mShownAddress = mPendingAddress;
+            mAddressView.setText(mShownAddress);
+        }
+    }
+
+    public void cancel() {
+        if (mFrameScheduled) {
+            mFrameScheduled = false;
+            Choreographer.getInstance().removeFrameCallback(this);
+        }
+    }
+}
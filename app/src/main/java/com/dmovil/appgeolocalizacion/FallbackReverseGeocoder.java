@@ -0,0 +1,33 @@
+package com.dmovil.appgeolocalizacion;
+
+import java.io.IOException;
+
+public class FallbackReverseGeocoder implements ReverseGeocoder {
+
+    private final ReverseGeocoder[] mGeocoders;
+
+    public FallbackReverseGeocoder(ReverseGeocoder... geocoders) {
+        mGeocoders = geocoders.clone();
+    }
+
+    @Override
+    public String getAddress(double latitude, double longitude) throws IOException {
+        //Prueba cada geocodificador en orden y devuelve la primera direccion encontrada. Si
+        // todos fallan se lanza el ultimo error.
+        IOException lastError = null;
+        for (ReverseGeocoder geocoder : mGeocoders) {
+            try {
+                String address = geocoder.getAddress(latitude, longitude);
+                if (address != null) {
+                    return address;
+                }
+            } catch (IOException e) {
+                lastError = e;
+            }
+        }
+        if (lastError != null) {
+            throw lastError;
+        }
+        return null;
+    }
+}
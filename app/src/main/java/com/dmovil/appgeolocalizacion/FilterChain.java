@@ -0,0 +1,40 @@
+package com.dmovil.appgeolocalizacion;
+
+public class FilterChain implements FixFilter {
+
+    private final FixFilter[] mFilters;
+    private long mAccepted;
+    private long mRejected;
+
+    public FilterChain(FixFilter... filters) {
+        mFilters = filters.clone();
+    }
+
+    @Override
+    public boolean accept(Fix fix) {
+        //Aplica los filtros en orden; el primero que descarta la ubicación detiene la cadena.
+        for (FixFilter filter : mFilters) {
+            if (!filter.accept(fix)) {
+                mRejected++;
+                return false;
+            }
+        }
+        mAccepted++;
+        return true;
+    }
+
+    @Override
+    public void reset() {
+        for (FixFilter filter : mFilters) {
+            filter.reset();
+        }
+    }
+
+    public long getAcceptedCount() {
+        return mAccepted;
+    }
+
+    public long getRejectedCount() {
+        return mRejected;
+    }
+}
@@ -0,0 +1,24 @@
+package com.dmovil.appgeolocalizacion;
+
+public final class Fix {
+
+    //Ubicación en valores primitivos. Se reutiliza la misma instancia para cada ubicación
+    // nueva, por lo que los filtros no crean objetos.
+    public double latitude;
+    public double longitude;
+    public long time;
+    public float accuracy;
+    public boolean hasSpeed;
+    public float speed;
+
+    public Fix set(double latitude, double longitude, long time, float accuracy,
+                   boolean hasSpeed, float speed) {
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.time = time;
+        this.accuracy = accuracy;
+        this.hasSpeed = hasSpeed;
+        this.speed = speed;
+        return this;
+    }
+}
@@ -0,0 +1,11 @@
+package com.dmovil.appgeolocalizacion;
+
+public interface FixFilter {
+
+    //Devuelve false si la ubicación se descarta. El filtro puede modificar los valores de fix
+    // (por ejemplo para suavizarla).
+    boolean accept(Fix fix);
+
+    //Olvida el estado acumulado, por ejemplo cuando se reinicia la suscripción.
+    void reset();
+}
@@ -0,0 +1,56 @@
+package com.dmovil.appgeolocalizacion;
+
+public final class GeoMath {
+
+    //Radio medio de la Tierra en metros.
+    public static final double EARTH_RADIUS = 6371008.8;
+    //Metros que mide un grado de latitud.
+    public static final double METERS_PER_DEGREE = EARTH_RADIUS * Math.PI / 180.0;
+
+    //Diferencia en grados (unos 11 km) bajo la cual basta la aproximacion plana.
+    private static final double SHORT_DISTANCE_DEGREES = 0.1;
+
+    private GeoMath() {
+    }
+
+    public static double metersPerDegreeLongitude(double latitude) {
+        //Un grado de longitud se acorta con el coseno de la latitud.
+        return METERS_PER_DEGREE * Math.cos(Math.toRadians(latitude));
+    }
+
+    public static double equirectangularDistance(double lat1, double lon1,
+                                                 double lat2, double lon2) {
+        //Aproximacion plana de la distancia en metros; muy precisa para distancias cortas
+        // como las que hay entre dos ubicaciones consecutivas.
+        double x = Math.toRadians(lon2 - lon1) * Math.cos(Math.toRadians((lat1 + lat2) / 2));
+        double y = Math.toRadians(lat2 - lat1);
+        return Math.sqrt(x * x + y * y) * EARTH_RADIUS;
+    }
+
+    public static double haversineDistance(double lat1, double lon1,
+                                           double lat2, double lon2) {
+        //Distancia sobre la esfera en metros; mas costosa, pero exacta tambien para puntos
+        // lejanos, por ejemplo despues de un hueco largo sin señal.
+        double phi1 = Math.toRadians(lat1);
+        double phi2 = Math.toRadians(lat2);
+        double sinLat = Math.sin((phi2 - phi1) / 2);
+        double sinLon = Math.sin(Math.toRadians(lon2 - lon1) / 2);
+        double a = sinLat * sinLat + Math.cos(phi1) * Math.cos(phi2) * sinLon * sinLon;
+        return 2 * EARTH_RADIUS * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    public static double distance(double lat1, double lon1, double lat2, double lon2) {
+        //Usa la aproximacion plana para puntos cercanos (error menor a 0.1%) y haversine
+        // para los demas.
+        if (Math.abs(lat2 - lat1) < SHORT_DISTANCE_DEGREES
+                && Math.abs(lon2 - lon1) < SHORT_DISTANCE_DEGREES) {
+            return equirectangularDistance(lat1, lon1, lat2, lon2);
+        }
+        return haversineDistance(lat1, lon1, lat2, lon2);
+    }
+
+    public static double metersPerPixel(double zoom, double latitude) {
+        //Escala del mapa (proyeccion Web Mercator con teselas de 256 px) en metros por pixel.
+        return 156543.03392 * Math.cos(Math.toRadians(latitude)) / Math.pow(2, zoom);
+    }
+}
@@ -0,0 +1,190 @@
+package com.dmovil.appgeolocalizacion;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class GeocodingPipeline {
+
+    private static final String TAG = GeocodingPipeline.class.getSimpleName();
+
+    //Distancia minima entre peticiones para calcular la direccion de avance y buscar por
+    // adelantado la direccion de la tesela siguiente.
+    public static final double PREFETCH_MIN_METERS = 20;
+
+    public interface Callback {
+        //Se llama en el hilo principal con la direccion resuelta.
+        void onAddressResolved(String address);
+    }
+
+    private final ReverseGeocoder mGeocoder;
+    private final TileCache<String> mCache;
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    //Cada peticion nueva incrementa la generacion; los resultados de generaciones
+    // anteriores se descartan.
+    private final AtomicLong mGeneration = new AtomicLong();
+    private final Callback mCallback;
+
+    //Despues de shutdown las peticiones se ignoran: request puede seguir llegando desde el
+    // hilo de ubicaciones compartido, y el executor ya no acepta tareas.
+    private volatile boolean mShutdown;
+
+    private Future<?> mPending;
+    private long mPendingCell = -1L;
+
+    //Ultima posicion usada para la direccion de avance y ultima tesela pedida por adelantado.
+    private boolean mHasHeadingOrigin;
+    private double mHeadingOriginLat;
+    private double mHeadingOriginLon;
+    private long mPrefetchCell = -1L;
+
+    public GeocodingPipeline(ReverseGeocoder geocoder, TileCache<String> cache, Callback callback) {
+        //El geocodificador se crea una sola vez en lugar de en cada actualizacion. La cache
+        // por teselas se comparte con otras pantallas.
+        mGeocoder = geocoder;
+        mCache = cache;
+        mCallback = callback;
+    }
+
+    public synchronized void request(final double latitude, final double longitude) {
+        if (mShutdown) {
+            return;
+        }
+        final long cell = mCache.tileKey(latitude, longitude);
+        prefetchAhead(latitude, longitude, cell);
+
+        //Si la tesela ya esta en memoria se entrega la direccion sin consultar al Geocoder y
+        // se invalida cualquier busqueda pendiente.
+        String cached = mCache.getCached(cell);
+        if (cached != null) {
+            PipelineMetrics.get().countGeocodeCacheHit();
+            cancelPending();
+            mGeneration.incrementAndGet();
+            deliver(cached);
+            return;
+        }
+
+        //Si ya hay una busqueda en curso para la misma celda no se lanza otra.
+        if (mPending != null && !mPending.isDone() && mPendingCell == cell) {
+            return;
+        }
+
+        //Solo se resuelve la ubicacion mas reciente: la peticion anterior se cancela.
+        cancelPending();
+        final long generation = mGeneration.incrementAndGet();
+        mPendingCell = cell;
+        mPending = mExecutor.submit(new Runnable() {
+            @Override
+            public void run() {
+                if (generation != mGeneration.get()) {
+                    return;
+                }
+                //Antes de consultar al Geocoder se busca en el nivel en disco de la cache.
+                String address = mCache.get(cell);
+                if (address != null) {
+                    PipelineMetrics.get().countGeocodeCacheHit();
+                } else {
+                    address = resolve(latitude, longitude);
+                    if (address == null) {
+                        return;
+                    }
+                    mCache.put(cell, address);
+                }
+                if (generation == mGeneration.get()) {
+                    deliver(address);
+                }
+            }
+        });
+    }
+
+    private void prefetchAhead(double latitude, double longitude, long cell) {
+        //Con la direccion de avance se resuelve por adelantado la tesela siguiente, en el
+        // mismo hilo y despues de la peticion actual, para que al llegar ya este en la cache.
+        //Solo se llama desde request, con el candado tomado y despues de revisar mShutdown,
+        // asi execute nunca recibe tareas con el executor detenido.
+        if (!mHasHeadingOrigin) {
+            mHasHeadingOrigin = true;
+            mHeadingOriginLat = latitude;
+            mHeadingOriginLon = longitude;
+            return;
+        }
+        double metersPerLon = GeoMath.metersPerDegreeLongitude(latitude);
+        double north = (latitude - mHeadingOriginLat) * GeoMath.METERS_PER_DEGREE;
+        double east = (longitude - mHeadingOriginLon) * metersPerLon;
+        double moved = Math.sqrt(north * north + east * east);
+        if (moved < PREFETCH_MIN_METERS) {
+            return;
+        }
+        mHeadingOriginLat = latitude;
+        mHeadingOriginLon = longitude;
+        double step = mCache.tileSizeMeters(latitude) / moved;
+        final double aheadLat = latitude + north * step / GeoMath.METERS_PER_DEGREE;
+        final double aheadLon = longitude + east * step / metersPerLon;
+        final long aheadCell = mCache.tileKey(aheadLat, aheadLon);
+        if (aheadCell == cell || aheadCell == mPrefetchCell || mCache.getCached(aheadCell) != null) {
+            return;
+        }
+        mPrefetchCell = aheadCell;
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (mCache.get(aheadCell) == null) {
+                    String address = resolve(aheadLat, aheadLon);
+                    if (address != null) {
+                        mCache.put(aheadCell, address);
+                    }
+                }
+            }
+        });
+    }
+
+    private String resolve(double latitude, double longitude) {
+        //Se ejecuta en el hilo del executor, nunca en el hilo principal.
+        long start = System.nanoTime();
+        try {
+            return mGeocoder.getAddress(latitude, longitude);
+        } catch (IOException e) {
+            Log.d(TAG, "No se pudo obtener la dirección: " + e.getMessage());
+        } finally {
+            PipelineMetrics.get().recordLatency(PipelineMetrics.GEOCODE, System.nanoTime() - start);
+        }
+        return null;
+    }
+
+    private void deliver(final String address) {
+        //El unico trabajo en el hilo principal es entregar el resultado.
+        if (mShutdown) {
+            return;
+        }
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                mCallback.onAddressResolved(address);
+            }
+        });
+    }
+
+    private void cancelPending() {
+        if (mPending != null) {
+            mPending.cancel(true);
+            mPending = null;
+            mPendingCell = -1L;
+        }
+    }
+
+    public synchronized void shutdown() {
+        //Detiene el hilo de busqueda y descarta los resultados pendientes.
+        mShutdown = true;
+        cancelPending();
+        mGeneration.incrementAndGet();
+        mMainHandler.removeCallbacksAndMessages(null);
+        mExecutor.shutdownNow();
+    }
+}
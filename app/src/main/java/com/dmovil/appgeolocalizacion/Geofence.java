@@ -0,0 +1,86 @@
+package com.dmovil.appgeolocalizacion;
+
+public final class Geofence {
+
+    //Una geocerca es un circulo (centro y radio en metros) o un poligono (vertices en
+    // grados). Es inmutable, por lo que se puede compartir entre hilos.
+    private final String mId;
+    private final double mLatitude;
+    private final double mLongitude;
+    private final double mRadius;
+    private final double[] mLatitudes;
+    private final double[] mLongitudes;
+
+    //Rectangulo que contiene a la geocerca; se usa para indexarla y como primera prueba.
+    final double minLatitude;
+    final double maxLatitude;
+    final double minLongitude;
+    final double maxLongitude;
+
+    private Geofence(String id, double latitude, double longitude, double radius,
+                     double[] latitudes, double[] longitudes,
+                     double minLat, double maxLat, double minLon, double maxLon) {
+        mId = id;
+        mLatitude = latitude;
+        mLongitude = longitude;
+        mRadius = radius;
+        mLatitudes = latitudes;
+        mLongitudes = longitudes;
+        minLatitude = minLat;
+        maxLatitude = maxLat;
+        minLongitude = minLon;
+        maxLongitude = maxLon;
+    }
+
+    public static Geofence circle(String id, double latitude, double longitude, double radiusMeters) {
+        double dLat = radiusMeters / GeoMath.METERS_PER_DEGREE;
+        double dLon = radiusMeters / Math.max(GeoMath.metersPerDegreeLongitude(latitude), 1.0);
+        return new Geofence(id, latitude, longitude, radiusMeters, null, null,
+                latitude - dLat, latitude + dLat, longitude - dLon, longitude + dLon);
+    }
+
+    public static Geofence polygon(String id, double[] latitudes, double[] longitudes) {
+        if (latitudes.length < 3 || latitudes.length != longitudes.length) {
+            throw new IllegalArgumentException("Un poligono necesita al menos tres vertices");
+        }
+        double minLat = Double.MAX_VALUE, maxLat = -Double.MAX_VALUE;
+        double minLon = Double.MAX_VALUE, maxLon = -Double.MAX_VALUE;
+        for (int i = 0; i < latitudes.length; i++) {
+            minLat = Math.min(minLat, latitudes[i]);
+            maxLat = Math.max(maxLat, latitudes[i]);
+            minLon = Math.min(minLon, longitudes[i]);
+            maxLon = Math.max(maxLon, longitudes[i]);
+        }
+        return new Geofence(id, 0, 0, 0, latitudes.clone(), longitudes.clone(),
+                minLat, maxLat, minLon, maxLon);
+    }
+
+    public boolean contains(double latitude, double longitude) {
+        if (latitude < minLatitude || latitude > maxLatitude
+                || longitude < minLongitude || longitude > maxLongitude) {
+            return false;
+        }
+        if (mLatitudes == null) {
+            return GeoMath.equirectangularDistance(mLatitude, mLongitude, latitude, longitude) <= mRadius;
+        }
+        //Prueba del rayo: se cuenta cuantas aristas cruza una linea horizontal desde el punto.
+        boolean inside = false;
+        int n = mLatitudes.length;
+        for (int i = 0, j = n - 1; i < n; j = i++) {
+            if ((mLatitudes[i] > latitude) != (mLatitudes[j] > latitude)
+                    && longitude < (mLongitudes[j] - mLongitudes[i]) * (latitude - mLatitudes[i])
+                    / (mLatitudes[j] - mLatitudes[i]) + mLongitudes[i]) {
+                inside = !inside;
+            }
+        }
+        return inside;
+    }
+
+    public String getId() {
+        return mId;
+    }
+
+    public boolean isCircle() {
+        return mLatitudes == null;
+    }
+}
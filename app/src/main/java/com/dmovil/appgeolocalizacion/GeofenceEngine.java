@@ -0,0 +1,258 @@
+package com.dmovil.appgeolocalizacion;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public class GeofenceEngine {
+
+    //java.util.logging para que la clase siga sin depender de Android; en el telefono los
+    // mensajes llegan a logcat.
+    private static final Logger LOG = Logger.getLogger(GeofenceEngine.class.getName());
+
+    public static final int TRANSITION_ENTER = 1;
+    public static final int TRANSITION_EXIT = 2;
+    public static final int TRANSITION_DWELL = 4;
+
+    //Celdas por grado de la cuadricula (0.01 grados, aprox. 1.1 km).
+    public static final int DEFAULT_CELLS_PER_DEGREE = 100;
+    //Tiempo dentro de una geocerca para considerar que se permanece en ella.
+    public static final long DEFAULT_DWELL_MILLIS = 5 * 60 * 1000;
+    //Maximo de celdas que ocupa una geocerca en la cuadricula. Las mas grandes se guardan
+    // aparte y se revisan en cada ubicación, para que una sola geocerca enorme no llene el
+    // indice de celdas.
+    public static final int MAX_CELLS_PER_FENCE = 256;
+
+    public interface Listener {
+        //Se llama en el hilo que evalua las ubicaciones.
+        void onGeofenceEvent(Geofence geofence, int transition, long time);
+    }
+
+    private final int mCellsPerDegree;
+    private final long mDwellMillis;
+    private final Listener mListener;
+
+    //Indice inmutable; las cargas construyen uno nuevo y lo reemplazan, asi la evaluacion
+    // nunca espera a una carga.
+    private volatile GridIndex mIndex;
+
+    //Estado de las geocercas en las que esta el dispositivo. Solo lo usa el hilo que evalua.
+    private final Map<String, Inside> mInside = new LinkedHashMap<>();
+    private final ArrayList<Inside> mInsideScratch = new ArrayList<>();
+    private long mStamp;
+
+    public GeofenceEngine(Listener listener) {
+        this(listener, DEFAULT_CELLS_PER_DEGREE, DEFAULT_DWELL_MILLIS);
+    }
+
+    public GeofenceEngine(Listener listener, int cellsPerDegree, long dwellMillis) {
+        mListener = listener;
+        mCellsPerDegree = cellsPerDegree;
+        mDwellMillis = dwellMillis;
+        mIndex = new GridIndex(new HashMap<String, Geofence>(), cellsPerDegree);
+    }
+
+    public synchronized void load(Collection<Geofence> geofences) {
+        //Reemplaza todas las geocercas. Puede llamarse desde cualquier hilo; el indice se
+        // construye fuera de la evaluacion y se publica de una vez.
+        Map<String, Geofence> byId = new HashMap<>();
+        for (Geofence geofence : geofences) {
+            byId.put(geofence.getId(), geofence);
+        }
+        mIndex = new GridIndex(byId, mCellsPerDegree);
+    }
+
+    public synchronized void update(Collection<Geofence> added, Collection<String> removedIds) {
+        //Agrega o reemplaza y quita geocercas sobre una copia del indice actual.
+        Map<String, Geofence> byId = new HashMap<>(mIndex.byId);
+        for (String id : removedIds) {
+            byId.remove(id);
+        }
+        for (Geofence geofence : added) {
+            byId.put(geofence.getId(), geofence);
+        }
+        mIndex = new GridIndex(byId, mCellsPerDegree);
+    }
+
+    public int size() {
+        return mIndex.byId.size();
+    }
+
+    public void evaluate(double latitude, double longitude, long time) {
+        //Revisa solo las geocercas registradas en la celda de la ubicación, las geocercas
+        // grandes y las geocercas en las que ya se estaba, y emite los eventos de entrada,
+        // salida y permanencia.
+        GridIndex index = mIndex;
+        long stamp = ++mStamp;
+
+        Geofence[] candidates = index.candidates(latitude, longitude);
+        if (candidates != null) {
+            markInside(candidates, latitude, longitude, time, stamp);
+        }
+        markInside(index.large, latitude, longitude, time, stamp);
+
+        if (mInside.isEmpty()) {
+            return;
+        }
+        //Las geocercas que no aparecieron en esta ubicación (o que ya no estan cargadas)
+        // generan una salida; las demas pueden generar permanencia.
+        mInsideScratch.clear();
+        mInsideScratch.addAll(mInside.values());
+        for (int i = 0; i < mInsideScratch.size(); i++) {
+            Inside inside = mInsideScratch.get(i);
+            if (inside.stamp != stamp) {
+                mInside.remove(inside.geofence.getId());
+                mListener.onGeofenceEvent(inside.geofence, TRANSITION_EXIT, time);
+            } else if (!inside.dwellNotified && time - inside.enterTime >= mDwellMillis) {
+                inside.dwellNotified = true;
+                mListener.onGeofenceEvent(inside.geofence, TRANSITION_DWELL, time);
+            }
+        }
+        mInsideScratch.clear();
+    }
+
+    private void markInside(Geofence[] candidates, double latitude, double longitude, long time,
+                            long stamp) {
+        for (Geofence geofence : candidates) {
+            if (!geofence.contains(latitude, longitude)) {
+                continue;
+            }
+            Inside inside = mInside.get(geofence.getId());
+            if (inside == null) {
+                inside = new Inside(geofence, time);
+                mInside.put(geofence.getId(), inside);
+                mListener.onGeofenceEvent(geofence, TRANSITION_ENTER, time);
+            }
+            inside.geofence = geofence;
+            inside.stamp = stamp;
+        }
+    }
+
+    public void reset() {
+        //Olvida en que geocercas se estaba, sin emitir salidas.
+        mInside.clear();
+    }
+
+    public static List<Geofence> readGeofences(BufferedReader reader) throws IOException {
+        //Lee geocercas de un archivo de texto con lineas de la forma
+        // "id,circle,latitud,longitud,radio" o "id,polygon,lat lon;lat lon;lat lon;...".
+        List<Geofence> geofences = new ArrayList<>();
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            String[] parts = line.trim().split(",");
+            try {
+                if (parts.length == 5 && "circle".equals(parts[1])) {
+                    geofences.add(Geofence.circle(parts[0], Double.parseDouble(parts[2]),
+                            Double.parseDouble(parts[3]), Double.parseDouble(parts[4])));
+                } else if (parts.length == 3 && "polygon".equals(parts[1])) {
+                    String[] vertices = parts[2].split(";");
+                    double[] latitudes = new double[vertices.length];
+                    double[] longitudes = new double[vertices.length];
+                    for (int i = 0; i < vertices.length; i++) {
+                        String[] point = vertices[i].trim().split("\\s+");
+                        if (point.length != 2) {
+                            throw new IllegalArgumentException("Vertice invalido: " + vertices[i]);
+                        }
+                        latitudes[i] = Double.parseDouble(point[0]);
+                        longitudes[i] = Double.parseDouble(point[1]);
+                    }
+                    geofences.add(Geofence.polygon(parts[0], latitudes, longitudes));
+                }
+            } catch (RuntimeException e) {
+                //Las lineas invalidas se saltan (numeros mal escritos, vertices incompletos o
+                // poligonos sin suficientes vertices), pero se reportan para poder corregirlas.
+                LOG.log(Level.WARNING, "Geocerca invalida en la linea " + lineNumber + ": " + line, e);
+            }
+        }
+        return geofences;
+    }
+
+    private static final class Inside {
+        Geofence geofence;
+        final long enterTime;
+        long stamp;
+        boolean dwellNotified;
+
+        Inside(Geofence geofence, long enterTime) {
+            this.geofence = geofence;
+            this.enterTime = enterTime;
+        }
+    }
+
+    private static final class GridIndex {
+        //Cuadricula uniforme: claves de celda ordenadas y, en paralelo, las geocercas cuyo
+        // rectangulo toca cada celda. La busqueda es binaria y no crea objetos. Las geocercas
+        // que ocuparian mas de MAX_CELLS_PER_FENCE celdas quedan en large.
+        final Map<String, Geofence> byId;
+        final int cellsPerDegree;
+        final long[] keys;
+        final Geofence[][] cells;
+        final Geofence[] large;
+
+        GridIndex(Map<String, Geofence> byId, int cellsPerDegree) {
+            this.byId = byId;
+            this.cellsPerDegree = cellsPerDegree;
+            Map<Long, List<Geofence>> grid = new HashMap<>();
+            List<Geofence> oversized = new ArrayList<>();
+            for (Geofence geofence : byId.values()) {
+                long minRow = row(geofence.minLatitude);
+                long maxRow = row(geofence.maxLatitude);
+                long minColumn = column(geofence.minLongitude);
+                long maxColumn = column(geofence.maxLongitude);
+                if ((maxRow - minRow + 1) * (maxColumn - minColumn + 1) > MAX_CELLS_PER_FENCE) {
+                    oversized.add(geofence);
+                    continue;
+                }
+                for (long r = minRow; r <= maxRow; r++) {
+                    for (long c = minColumn; c <= maxColumn; c++) {
+                        Long key = r * columns() + c;
+                        List<Geofence> cell = grid.get(key);
+                        if (cell == null) {
+                            cell = new ArrayList<>();
+                            grid.put(key, cell);
+                        }
+                        cell.add(geofence);
+                    }
+                }
+            }
+            keys = new long[grid.size()];
+            int i = 0;
+            for (Long key : grid.keySet()) {
+                keys[i++] = key;
+            }
+            Arrays.sort(keys);
+            cells = new Geofence[keys.length][];
+            for (i = 0; i < keys.length; i++) {
+                cells[i] = grid.get(keys[i]).toArray(new Geofence[0]);
+            }
+            large = oversized.toArray(new Geofence[0]);
+        }
+
+        Geofence[] candidates(double latitude, double longitude) {
+            int position = Arrays.binarySearch(keys, row(latitude) * columns() + column(longitude));
+            return position < 0 ? null : cells[position];
+        }
+
+        private long columns() {
+            return 360L * cellsPerDegree;
+        }
+
+        private long row(double latitude) {
+            return (long) Math.floor((latitude + 90.0) * cellsPerDegree);
+        }
+
+        private long column(double longitude) {
+            return (long) Math.floor((longitude + 180.0) * cellsPerDegree);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.dmovil.appgeolocalizacion;
+
+public final class Geohash {
+
+    //Numero de bits por defecto: 35 bits equivalen a celdas de unos 150 x 150 metros.
+    public static final int DEFAULT_BITS = 35;
+
+    private Geohash() {
+    }
+
+    public static long encode(double latitude, double longitude, int bits) {
+        //Codifica la latitud y longitud intercalando los bits de cada eje (primero la
+        // longitud, igual que el geohash estandar) y devuelve la celda como un entero.
+        double minLat = -90.0, maxLat = 90.0;
+        double minLon = -180.0, maxLon = 180.0;
+        long hash = 0L;
+        for (int i = 0; i < bits; i++) {
+            hash <<= 1;
+            if ((i & 1) == 0) {
+                double mid = (minLon + maxLon) / 2;
+                if (longitude >= mid) {
+                    hash |= 1L;
+                    minLon = mid;
+                } else {
+                    maxLon = mid;
+                }
+            } else {
+                double mid = (minLat + maxLat) / 2;
+                if (latitude >= mid) {
+                    hash |= 1L;
+                    minLat = mid;
+                } else {
+                    maxLat = mid;
+                }
+            }
+        }
+        return hash;
+    }
+
+    public static long encode(double latitude, double longitude) {
+        return encode(latitude, longitude, DEFAULT_BITS);
+    }
+}
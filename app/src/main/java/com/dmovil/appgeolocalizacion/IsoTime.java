@@ -0,0 +1,109 @@
+package com.dmovil.appgeolocalizacion;
+
+public final class IsoTime {
+
+    private IsoTime() {
+    }
+
+    public static long parse(CharSequence text) {
+        //Convierte una fecha ISO 8601 ("2021-10-18T12:34:56Z", con milisegundos o con zona
+        // "+02:00") a milisegundos desde 1970. Lanza IllegalArgumentException si no es valida.
+        int length = text.length();
+        if (length < 19 || text.charAt(4) != '-' || text.charAt(7) != '-'
+                || (text.charAt(10) != 'T' && text.charAt(10) != ' ')
+                || text.charAt(13) != ':' || text.charAt(16) != ':') {
+            throw new IllegalArgumentException("Fecha invalida: " + text);
+        }
+        int year = digits(text, 0, 4);
+        int month = digits(text, 5, 2);
+        int day = digits(text, 8, 2);
+        int hour = digits(text, 11, 2);
+        int minute = digits(text, 14, 2);
+        int second = digits(text, 17, 2);
+        int pos = 19;
+        long millis = 0;
+        if (pos < length && text.charAt(pos) == '.') {
+            pos++;
+            int scale = 100;
+            while (pos < length && Character.isDigit(text.charAt(pos))) {
+                millis += (text.charAt(pos) - '0') * scale;
+                scale /= 10;
+                pos++;
+            }
+        }
+        long offsetMillis = 0;
+        if (pos < length) {
+            char zone = text.charAt(pos);
+            if (zone == '+' || zone == '-') {
+                if (length < pos + 6) {
+                    throw new IllegalArgumentException("Zona invalida: " + text);
+                }
+                long offset = (digits(text, pos + 1, 2) * 60L + digits(text, pos + 4, 2)) * 60000L;
+                offsetMillis = zone == '+' ? offset : -offset;
+            } else if (zone != 'Z') {
+                throw new IllegalArgumentException("Zona invalida: " + text);
+            }
+        }
+        long days = daysFromCivil(year, month, day);
+        return ((days * 24 + hour) * 60 + minute) * 60000L + second * 1000L + millis - offsetMillis;
+    }
+
+    public static StringBuilder append(StringBuilder builder, long millis) {
+        //Escribe la fecha en UTC como "2021-10-18T12:34:56Z" (con ".123" si hay milisegundos),
+        // sin SimpleDateFormat ni objetos intermedios.
+        long days = Math.floorDiv(millis, 86400000L);
+        int dayMillis = (int) Math.floorMod(millis, 86400000L);
+        //Conversion inversa de daysFromCivil.
+        long z = days + 719468;
+        long era = (z >= 0 ? z : z - 146096) / 146097;
+        long dayOfEra = z - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long monthIndex = (5 * dayOfYear + 2) / 153;
+        int day = (int) (dayOfYear - (153 * monthIndex + 2) / 5 + 1);
+        int month = (int) (monthIndex < 10 ? monthIndex + 3 : monthIndex - 9);
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+
+        appendDigits(builder, (int) year, 4).append('-');
+        appendDigits(builder, month, 2).append('-');
+        appendDigits(builder, day, 2).append('T');
+        appendDigits(builder, dayMillis / 3600000, 2).append(':');
+        appendDigits(builder, dayMillis / 60000 % 60, 2).append(':');
+        appendDigits(builder, dayMillis / 1000 % 60, 2);
+        if (dayMillis % 1000 != 0) {
+            appendDigits(builder.append('.'), dayMillis % 1000, 3);
+        }
+        return builder.append('Z');
+    }
+
+    private static StringBuilder appendDigits(StringBuilder builder, int value, int width) {
+        for (int limit = 10; width > 1; width--, limit *= 10) {
+            if (value < limit) {
+                builder.append('0');
+            }
+        }
+        return builder.append(value);
+    }
+
+    public static long daysFromCivil(int year, int month, int day) {
+        //Dias desde 1970-01-01 para una fecha del calendario gregoriano.
+        year -= month <= 2 ? 1 : 0;
+        long era = (year >= 0 ? year : year - 399) / 400;
+        long yearOfEra = year - era * 400;
+        long dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    private static int digits(CharSequence text, int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                throw new IllegalArgumentException("Fecha invalida: " + text);
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+}
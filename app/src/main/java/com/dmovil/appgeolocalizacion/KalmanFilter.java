@@ -0,0 +1,108 @@
+package com.dmovil.appgeolocalizacion;
+
+public class KalmanFilter implements FixFilter {
+
+    //Si pasa mas tiempo que esto entre ubicaciones el filtro empieza de nuevo.
+    public static final long MAX_GAP_MILLIS = 60000;
+
+    //Varianza de la aceleracion (m/s^2)^2 del modelo de velocidad constante.
+    private final double mAccelerationVariance;
+
+    private boolean mInitialized;
+    private long mTime;
+    //Origen de la proyeccion local en metros.
+    private double mOriginLat;
+    private double mOriginLon;
+    private double mMetersPerDegreeLon;
+
+    //Estado por eje: posicion (m), velocidad (m/s) y covarianza 2x2 simetrica.
+    private double mX, mVx, mX00, mX01, mX11;
+    private double mY, mVy, mY00, mY01, mY11;
+
+    public KalmanFilter(double accelerationStdDev) {
+        mAccelerationVariance = accelerationStdDev * accelerationStdDev;
+    }
+
+    @Override
+    public boolean accept(Fix fix) {
+        //Suaviza la latitud y longitud con un filtro de Kalman de velocidad constante. Nunca
+        // descarta ubicaciones; las modifica en el mismo objeto fix.
+        double variance = Math.max(fix.accuracy, 1f);
+        variance *= variance;
+        long elapsed = fix.time - mTime;
+        if (!mInitialized || elapsed <= 0 || elapsed > MAX_GAP_MILLIS) {
+            start(fix, variance);
+            return true;
+        }
+        double dt = elapsed / 1000.0;
+
+        double zx = (fix.longitude - mOriginLon) * mMetersPerDegreeLon;
+        double zy = (fix.latitude - mOriginLat) * GeoMath.METERS_PER_DEGREE;
+
+        //Eje x
+        double dt2 = dt * dt;
+        double q00 = mAccelerationVariance * dt2 * dt2 / 4;
+        double q01 = mAccelerationVariance * dt2 * dt / 2;
+        double q11 = mAccelerationVariance * dt2;
+
+        mX += mVx * dt;
+        mX00 += 2 * dt * mX01 + dt2 * mX11 + q00;
+        mX01 += dt * mX11 + q01;
+        mX11 += q11;
+        double s = mX00 + variance;
+        double k0 = mX00 / s;
+        double k1 = mX01 / s;
+        double innovation = zx - mX;
+        mX += k0 * innovation;
+        mVx += k1 * innovation;
+        mX11 -= k1 * mX01;
+        mX00 *= 1 - k0;
+        mX01 *= 1 - k0;
+
+        //Eje y
+        mY += mVy * dt;
+        mY00 += 2 * dt * mY01 + dt2 * mY11 + q00;
+        mY01 += dt * mY11 + q01;
+        mY11 += q11;
+        s = mY00 + variance;
+        k0 = mY00 / s;
+        k1 = mY01 / s;
+        innovation = zy - mY;
+        mY += k0 * innovation;
+        mVy += k1 * innovation;
+        mY11 -= k1 * mY01;
+        mY00 *= 1 - k0;
+        mY01 *= 1 - k0;
+
+        mTime = fix.time;
+        fix.latitude = mOriginLat + mY / GeoMath.METERS_PER_DEGREE;
+        fix.longitude = mOriginLon + mX / mMetersPerDegreeLon;
+        //La precision reportada pasa a ser la incertidumbre del filtro.
+        fix.accuracy = (float) Math.sqrt(Math.max(mX00, mY00));
+        return true;
+    }
+
+    private void start(Fix fix, double variance) {
+        mInitialized = true;
+        mTime = fix.time;
+        mOriginLat = fix.latitude;
+        mOriginLon = fix.longitude;
+        mMetersPerDegreeLon = GeoMath.metersPerDegreeLongitude(fix.latitude);
+        mX = 0;
+        mY = 0;
+        mVx = 0;
+        mVy = 0;
+        mX00 = variance;
+        mY00 = variance;
+        mX01 = 0;
+        mY01 = 0;
+        //Sin informacion de la velocidad inicial se usa una varianza grande.
+        mX11 = 100;
+        mY11 = 100;
+    }
+
+    @Override
+    public void reset() {
+        mInitialized = false;
+    }
+}
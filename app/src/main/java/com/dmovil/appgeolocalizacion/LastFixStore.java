@@ -0,0 +1,159 @@
+package com.dmovil.appgeolocalizacion;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+public class LastFixStore {
+
+    //Tiempo minimo entre escrituras; las ubicaciones intermedias solo actualizan la memoria.
+    public static final long WRITE_INTERVAL_MILLIS = 10000;
+
+    private static final int VERSION = 1;
+
+    public static final class Snapshot {
+        //Ultima ubicación conocida y su direccion (puede ser null).
+        public final double latitude;
+        public final double longitude;
+        public final long time;
+        public final float accuracy;
+        public final String address;
+
+        Snapshot(double latitude, double longitude, long time, float accuracy, String address) {
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.time = time;
+            this.accuracy = accuracy;
+            this.address = address;
+        }
+    }
+
+    private final File mFile;
+    private final ScheduledExecutorService mExecutor = Executors.newSingleThreadScheduledExecutor();
+    private Snapshot mCurrent;
+    private boolean mDirty;
+    private boolean mWriteScheduled;
+
+    private final Runnable mWriteTask = new Runnable() {
+        @Override
+        public void run() {
+            Snapshot snapshot;
+            synchronized (LastFixStore.this) {
+                mWriteScheduled = false;
+                if (!mDirty) {
+                    return;
+                }
+                mDirty = false;
+                snapshot = mCurrent;
+            }
+            try {
+                write(snapshot);
+            } catch (IOException e) {
+                //Si no se pudo escribir solo se pierde el arranque rapido de la proxima vez.
+                e.printStackTrace();
+            }
+        }
+    };
+
+    public LastFixStore(File file) {
+        mFile = file;
+    }
+
+    public Snapshot read() {
+        //Lectura sincrona: el archivo tiene unos pocos bytes, asi que se puede leer al crear la
+        // pantalla y mostrar la ubicación desde el primer cuadro. Devuelve null si no existe.
+        if (!mFile.exists()) {
+            return null;
+        }
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(mFile)));
+            try {
+                if (in.readInt() != VERSION) {
+                    return null;
+                }
+                double latitude = in.readDouble();
+                double longitude = in.readDouble();
+                long time = in.readLong();
+                float accuracy = in.readFloat();
+                String address = in.readBoolean() ? in.readUTF() : null;
+                Snapshot snapshot = new Snapshot(latitude, longitude, time, accuracy, address);
+                synchronized (this) {
+                    if (mCurrent == null) {
+                        mCurrent = snapshot;
+                    }
+                }
+                return snapshot;
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    public synchronized void save(double latitude, double longitude, long time, float accuracy) {
+        //Guarda la ubicación en memoria conservando la ultima direccion conocida; la escritura
+        // se hace despues en segundo plano.
+        String address = mCurrent != null ? mCurrent.address : null;
+        mCurrent = new Snapshot(latitude, longitude, time, accuracy, address);
+        markDirty();
+    }
+
+    public synchronized void saveAddress(String address) {
+        if (mCurrent == null) {
+            return;
+        }
+        mCurrent = new Snapshot(mCurrent.latitude, mCurrent.longitude, mCurrent.time,
+                mCurrent.accuracy, address);
+        markDirty();
+    }
+
+    public void flush() {
+        //Escribe ya lo pendiente (por ejemplo al salir de la pantalla), sin bloquear.
+        mExecutor.execute(mWriteTask);
+    }
+
+    public void release() {
+        //Escribe lo pendiente y termina el hilo de escritura cuando acabe.
+        flush();
+        mExecutor.shutdown();
+    }
+
+    private void markDirty() {
+        mDirty = true;
+        if (!mWriteScheduled) {
+            mWriteScheduled = true;
+            mExecutor.schedule(mWriteTask, WRITE_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void write(Snapshot snapshot) throws IOException {
+        //Se escribe en un archivo temporal y se renombra, asi nunca queda un archivo a medias.
+        File temp = new File(mFile.getPath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+        try {
+            out.writeInt(VERSION);
+            out.writeDouble(snapshot.latitude);
+            out.writeDouble(snapshot.longitude);
+            out.writeLong(snapshot.time);
+            out.writeFloat(snapshot.accuracy);
+            out.writeBoolean(snapshot.address != null);
+            if (snapshot.address != null) {
+                out.writeUTF(snapshot.address);
+            }
+        } finally {
+            out.close();
+        }
+        if (!temp.renameTo(mFile)) {
+            throw new IOException("No se pudo reemplazar " + mFile);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.dmovil.appgeolocalizacion;
+
+import com.google.android.gms.maps.model.LatLng;
+
+import java.util.AbstractList;
+
+public class LatLngRing extends AbstractList<LatLng> {
+
+    //Arreglo de capacidad fija; al llenarse se sobrescribe el punto mas antiguo.
+    private final LatLng[] mPoints;
+    private int mStart;
+    private int mSize;
+
+    public LatLngRing(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("La capacidad debe ser mayor que cero");
+        }
+        mPoints = new LatLng[capacity];
+    }
+
+    @Override
+    public boolean add(LatLng point) {
+        //Agrega el punto al final; si el anillo esta lleno descarta el primero.
+        if (mSize < mPoints.length) {
+            mPoints[(mStart + mSize) % mPoints.length] = point;
+            mSize++;
+        } else {
+            mPoints[mStart] = point;
+            mStart = (mStart + 1) % mPoints.length;
+        }
+        modCount++;
+        return true;
+    }
+
+    public LatLng removeLast() {
+        //Quita el ultimo punto agregado (lo usa el mapa para reemplazar el punto pendiente).
+        if (mSize == 0) {
+            throw new IndexOutOfBoundsException("El anillo esta vacio");
+        }
+        int slot = (mStart + mSize - 1) % mPoints.length;
+        LatLng point = mPoints[slot];
+        mPoints[slot] = null;
+        mSize--;
+        modCount++;
+        return point;
+    }
+
+    @Override
+    public LatLng get(int index) {
+        if (index < 0 || index >= mSize) {
+            throw new IndexOutOfBoundsException("Indice: " + index + ", tamaño: " + mSize);
+        }
+        return mPoints[(mStart + index) % mPoints.length];
+    }
+
+    @Override
+    public int size() {
+        return mSize;
+    }
+
+    @Override
+    public void clear() {
+        for (int i = 0; i < mPoints.length; i++) {
+            mPoints[i] = null;
+        }
+        mStart = 0;
+        mSize = 0;
+        modCount++;
+    }
+
+    public int capacity() {
+        return mPoints.length;
+    }
+}
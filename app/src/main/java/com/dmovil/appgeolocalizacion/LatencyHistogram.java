@@ -0,0 +1,74 @@
+package com.dmovil.appgeolocalizacion;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public class LatencyHistogram {
+
+    //Cubeta i: latencias en [2^(i-1), 2^i) microsegundos; la cubeta 0 es menos de 1 us.
+    public static final int BUCKETS = 40;
+
+    private final AtomicLongArray mBuckets = new AtomicLongArray(BUCKETS);
+    private final AtomicLong mCount = new AtomicLong();
+    private final AtomicLong mTotalNanos = new AtomicLong();
+    private final AtomicLong mMaxNanos = new AtomicLong();
+
+    public void record(long nanos) {
+        //Sin bloqueos ni objetos: solo incrementos atomicos.
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        long micros = nanos / 1000;
+        int bucket = 64 - Long.numberOfLeadingZeros(micros);
+        mBuckets.incrementAndGet(Math.min(bucket, BUCKETS - 1));
+        mCount.incrementAndGet();
+        mTotalNanos.addAndGet(nanos);
+        long max = mMaxNanos.get();
+        while (nanos > max && !mMaxNanos.compareAndSet(max, nanos)) {
+            max = mMaxNanos.get();
+        }
+    }
+
+    public long getCount() {
+        return mCount.get();
+    }
+
+    public long getMeanMicros() {
+        long count = mCount.get();
+        return count == 0 ? 0 : mTotalNanos.get() / count / 1000;
+    }
+
+    public long getMaxMicros() {
+        return mMaxNanos.get() / 1000;
+    }
+
+    public long getPercentileMicros(double percentile) {
+        //Devuelve el limite superior de la cubeta donde cae el percentil (aproximado).
+        long count = mCount.get();
+        if (count == 0) {
+            return 0;
+        }
+        long target = (long) Math.ceil(count * percentile);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += mBuckets.get(i);
+            if (seen >= target) {
+                return i == 0 ? 1 : 1L << i;
+            }
+        }
+        return getMaxMicros();
+    }
+
+    public long getBucket(int index) {
+        return mBuckets.get(index);
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            mBuckets.set(i, 0);
+        }
+        mCount.set(0);
+        mTotalNanos.set(0);
+        mMaxNanos.set(0);
+    }
+}
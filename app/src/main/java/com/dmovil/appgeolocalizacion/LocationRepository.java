@@ -0,0 +1,387 @@
+package com.dmovil.appgeolocalizacion;
+
+import android.Manifest;
+import android.annotation.SuppressLint;
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.location.Location;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.core.content.ContextCompat;
+
+import com.google.android.gms.location.FusedLocationProviderClient;
+import com.google.android.gms.location.LocationCallback;
+import com.google.android.gms.location.LocationListener;
+import com.google.android.gms.location.LocationRequest;
+import com.google.android.gms.location.LocationResult;
+import com.google.android.gms.location.LocationServices;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class LocationRepository {
+
+    private static final String TAG = LocationRepository.class.getSimpleName();
+
+    private static LocationRepository sInstance;
+
+    private final Context mContext;
+    private final FusedLocationProviderClient mClient;
+    //Hilo en el que se entregan las ubicaciones; los observadores hacen su trabajo aqui y no
+    // en el hilo principal.
+    private final HandlerThread mLocationThread;
+    private final Handler mLocationHandler;
+    //Pantallas (u otros componentes) que reciben las ubicaciones. El numero de observadores
+    // es el contador de referencias: con cero se detiene el proveedor.
+    private final List<LocationListener> mObservers = new ArrayList<>();
+    private LocationListener[] mDispatchList = new LocationListener[0];
+
+    private LocationRequest mLocationRequest;
+    private boolean mUpdatesActive;
+    //Peticion por lotes del rastreo en segundo plano; se usa cuando no hay observadores.
+    private LocationRequest mBackgroundRequest;
+
+    //Reproduccion de un recorrido grabado; mientras existe reemplaza al proveedor de Google.
+    public static final String REPLAY_PROVIDER = "replay";
+    //Precision que se asigna a los puntos grabados que no la traen (GPX y NMEA).
+    public static final float REPLAY_ACCURACY_METERS = 5f;
+    private ReplayEngine mReplay;
+
+    //Filtros que se aplican antes de entregar las ubicaciones: se descartan las imprecisas y
+    // los saltos imposibles, y las demas se suavizan. Solo se usan en el hilo de ubicaciones.
+    public static final float MAX_ACCURACY_METERS = 100f;
+    public static final float MAX_SPEED_METERS_PER_SECOND = 70f;
+    public static final double ACCELERATION_STD_DEV = 3.0;
+    private final FilterChain mFilterChain = new FilterChain(
+            new AccuracyGate(MAX_ACCURACY_METERS),
+            new SpeedGate(MAX_SPEED_METERS_PER_SECOND),
+            new KalmanFilter(ACCELERATION_STD_DEV));
+    private final Fix mFix = new Fix();
+
+    //Registro en disco de todas las ubicaciones aceptadas; se escribe en el hilo de ubicaciones.
+    private final TrackLog mTrackLog;
+    //Estadisticas del viaje actual. Se suman en el hilo de ubicaciones con cada ubicación
+    // aceptada, haya o no pantallas abiertas; las pantallas solo las leen o las reinician.
+    private final TripStats mTripStats = new TripStats();
+
+    private final LocationCallback mLocationCallback = new LocationCallback() {
+        @Override
+        public void onLocationResult(@NonNull LocationResult result) {
+            //Un lote (rastreo en segundo plano) se procesa de una vez y se guarda en disco con
+            // una sola escritura; una ubicación suelta sigue el camino normal.
+            List<Location> locations = result.getLocations();
+            boolean batch = locations.size() > 1;
+            if (batch) {
+                mTrackLog.beginBatch();
+            }
+            for (Location location : locations) {
+                deliver(location);
+            }
+            if (batch) {
+                try {
+                    mTrackLog.endBatch();
+                } catch (IOException e) {
+                    Log.d(TAG, "No se pudo escribir el recorrido: " + e.getMessage());
+                }
+            }
+        }
+    };
+
+    public static synchronized LocationRepository get(Context context) {
+        //Una sola instancia para toda la aplicación, asi solo existe una suscripción.
+        if (sInstance == null) {
+            sInstance = new LocationRepository(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private LocationRepository(Context context) {
+        mContext = context;
+        mClient = LocationServices.getFusedLocationProviderClient(context);
+        mTrackLog = new TrackLog(new File(context.getFilesDir(), "tracks"));
+        mLocationThread = new HandlerThread("location-updates");
+        mLocationThread.start();
+        mLocationHandler = new Handler(mLocationThread.getLooper());
+        mLocationRequest = new LocationRequest()
+                .setInterval(MainActivity.UPDATE_INTERVAL)
+                .setFastestInterval(MainActivity.UPDATE_FASTEST_INTERVAL)
+                .setPriority(LocationRequest.PRIORITY_HIGH_ACCURACY);
+    }
+
+    public synchronized void addObserver(LocationListener observer) {
+        //El primer observador inicia las actualizaciones del proveedor.
+        mObservers.add(observer);
+        mDispatchList = mObservers.toArray(new LocationListener[0]);
+        if (mObservers.size() == 1) {
+            //Si habia rastreo en segundo plano se reemplaza por la peticion normal.
+            startUpdates();
+        }
+    }
+
+    public synchronized void removeObserver(LocationListener observer) {
+        //Cuando se va el ultimo observador se detiene el proveedor, o se pasa a la peticion
+        // por lotes si el rastreo en segundo plano esta activo.
+        if (mObservers.remove(observer)) {
+            mDispatchList = mObservers.toArray(new LocationListener[0]);
+            if (mObservers.isEmpty()) {
+                if (mBackgroundRequest != null) {
+                    startUpdates();
+                } else {
+                    stopUpdates();
+                }
+            }
+        }
+    }
+
+    public synchronized void setLocationRequest(LocationRequest request) {
+        //Cambia la configuracion de la suscripción; si esta activa se vuelve a pedir con la
+        // nueva configuracion, que reemplaza a la anterior.
+        mLocationRequest = request;
+        if (mUpdatesActive && !mObservers.isEmpty()) {
+            startUpdates();
+        }
+    }
+
+    public synchronized void startBackgroundTracking(LocationRequest request) {
+        //Mantiene las actualizaciones sin observadores, con una peticion por lotes, para que
+        // el recorrido se siga guardando con la pantalla apagada. Lo usa TrackingService.
+        mBackgroundRequest = request;
+        if (mObservers.isEmpty()) {
+            startUpdates();
+        }
+    }
+
+    public synchronized void stopBackgroundTracking() {
+        mBackgroundRequest = null;
+        if (mObservers.isEmpty() && mUpdatesActive) {
+            stopUpdates();
+        }
+    }
+
+    public synchronized boolean isBackgroundTracking() {
+        return mBackgroundRequest != null;
+    }
+
+    private boolean isUpdateNeeded() {
+        return !mObservers.isEmpty() || mBackgroundRequest != null;
+    }
+
+    public synchronized void refresh() {
+        //Se llama cuando se otorgan los permisos o se activan los ajustes de ubicación para
+        // iniciar la suscripción si hay observadores esperando.
+        if (isUpdateNeeded() && !mUpdatesActive) {
+            startUpdates();
+        }
+    }
+
+    public synchronized void startReplay(TrackBuffer track, float speed) {
+        //Reproduce un recorrido grabado en lugar del proveedor de Google. Los puntos pasan por
+        // los mismos filtros y observadores que las ubicaciones reales, asi que sirve para
+        // pruebas de carga y de regresion sin moverse ni depender del GPS. No se agregan al
+        // registro del recorrido: llevan el proveedor REPLAY_PROVIDER.
+        if (mReplay != null) {
+            mReplay.cancel();
+        }
+        if (mUpdatesActive) {
+            stopUpdates();
+        }
+        final ReplayEngine replay = new ReplayEngine(track, speed);
+        mReplay = replay;
+        //Los filtros empiezan limpios para que dos reproducciones den el mismo resultado.
+        mLocationHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                mFilterChain.reset();
+            }
+        });
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                runReplay(replay);
+            }
+        }, "location-replay").start();
+        Log.d(TAG, "Reproduccion iniciada: " + track.size() + " puntos a velocidad " + speed);
+    }
+
+    public synchronized void stopReplay() {
+        //Detiene la reproduccion; si hay observadores se vuelve al proveedor de Google. Los
+        // filtros se limpian para que las ubicaciones reales no dependan de las reproducidas.
+        if (mReplay == null) {
+            return;
+        }
+        mReplay.cancel();
+        mReplay = null;
+        flushOnLocationThread();
+        if (isUpdateNeeded()) {
+            startUpdates();
+        }
+    }
+
+    public synchronized boolean isReplaying() {
+        return mReplay != null;
+    }
+
+    private void runReplay(final ReplayEngine replay) {
+        //Se ejecuta en su propio hilo, que solo espera entre puntos; cada punto se procesa
+        // en el hilo de ubicaciones como cualquier otra ubicación.
+        try {
+            int delivered = replay.run(new ReplayEngine.Sink() {
+                @Override
+                public void onFix(double latitude, double longitude, long time, float accuracy, float speed) {
+                    final Location location = new Location(REPLAY_PROVIDER);
+                    location.setLatitude(latitude);
+                    location.setLongitude(longitude);
+                    location.setTime(time);
+                    location.setElapsedRealtimeNanos(SystemClock.elapsedRealtimeNanos());
+                    location.setAccuracy(accuracy > 0 ? accuracy : REPLAY_ACCURACY_METERS);
+                    if (speed > 0) {
+                        location.setSpeed(speed);
+                    }
+                    mLocationHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            //Tras cancelar, los filtros ya se limpiaron; los puntos que
+                            // quedaban en la cola se descartan para no volver a llenarlos.
+                            if (!replay.isCancelled()) {
+                                deliver(location);
+                            }
+                        }
+                    });
+                }
+            });
+            Log.d(TAG, "Reproduccion terminada: " + delivered + " puntos entregados");
+        } catch (InterruptedException e) {
+            Log.d(TAG, "Reproduccion interrumpida");
+        }
+        synchronized (this) {
+            if (mReplay == replay) {
+                stopReplay();
+            }
+        }
+    }
+
+    @SuppressLint("MissingPermission")
+    private void startUpdates() {
+        if (mReplay != null) {
+            //Mientras se reproduce un recorrido no se usa el proveedor.
+            return;
+        }
+        if (ContextCompat.checkSelfPermission(mContext, Manifest.permission.ACCESS_FINE_LOCATION)
+                != PackageManager.PERMISSION_GRANTED
+                && ContextCompat.checkSelfPermission(mContext, Manifest.permission.ACCESS_COARSE_LOCATION)
+                != PackageManager.PERMISSION_GRANTED) {
+            Log.d(TAG, "Sin permisos de ubicación, no se inician las actualizaciones.");
+            return;
+        }
+        //Con observadores se usa su peticion; sin ellos, la del rastreo en segundo plano.
+        LocationRequest request = mObservers.isEmpty() ? mBackgroundRequest : mLocationRequest;
+        mClient.requestLocationUpdates(request, mLocationCallback, mLocationThread.getLooper());
+        mUpdatesActive = true;
+    }
+
+    private void stopUpdates() {
+        mClient.removeLocationUpdates(mLocationCallback);
+        mUpdatesActive = false;
+        flushOnLocationThread();
+    }
+
+    private void flushOnLocationThread() {
+        //El estado de los filtros se olvida en el hilo de ubicaciones, donde se usan.
+        mLocationHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                mFilterChain.reset();
+                try {
+                    mTrackLog.flush();
+                } catch (IOException e) {
+                    Log.d(TAG, "No se pudo escribir el recorrido: " + e.getMessage());
+                }
+            }
+        });
+    }
+
+    private void deliver(Location location) {
+        //Procesa una ubicación en el hilo de ubicaciones, venga del proveedor o de una
+        // reproduccion: filtros, registro en disco y entrega a los observadores.
+        PipelineMetrics metrics = PipelineMetrics.get();
+        //Tiempo desde que el proveedor obtuvo la ubicación hasta que llega aqui.
+        metrics.countFixReceived();
+        metrics.recordLatency(PipelineMetrics.FIX_AGE,
+                SystemClock.elapsedRealtimeNanos() - location.getElapsedRealtimeNanos());
+        if (filter(location)) {
+            //Las ubicaciones reproducidas no se guardan en el registro de recorridos reales ni
+            // cuentan para el viaje.
+            if (!REPLAY_PROVIDER.equals(location.getProvider())) {
+                record(location);
+                mTripStats.add(location.getLatitude(), location.getLongitude(),
+                        location.getTime(), location.hasAltitude(), location.getAltitude(),
+                        location.hasSpeed(), location.getSpeed());
+            }
+            dispatch(location);
+        } else {
+            metrics.countFixDropped();
+        }
+    }
+
+    private boolean filter(Location location) {
+        //Pasa la ubicación por la cadena de filtros usando siempre el mismo objeto Fix. Las
+        // ubicaciones descartadas no llegan a los observadores, asi que tampoco generan
+        // busquedas de direccion ni redibujados.
+        //Sin precision conocida se pasa cero; AccuracyGate le asigna la precision supuesta.
+        mFix.set(location.getLatitude(), location.getLongitude(), location.getTime(),
+                location.hasAccuracy() ? location.getAccuracy() : 0f,
+                location.hasSpeed(), location.getSpeed());
+        if (!mFilterChain.accept(mFix)) {
+            return false;
+        }
+        location.setLatitude(mFix.latitude);
+        location.setLongitude(mFix.longitude);
+        location.setAccuracy(mFix.accuracy);
+        return true;
+    }
+
+    private void record(Location location) {
+        //Agrega la ubicación al registro en disco; el costo es codificar unos bytes en memoria.
+        try {
+            mTrackLog.append(location.getLatitude(), location.getLongitude(),
+                    location.getTime(), location.getAccuracy());
+        } catch (IOException e) {
+            Log.d(TAG, "No se pudo escribir el recorrido: " + e.getMessage());
+        }
+    }
+
+    public TrackLog getTrackLog() {
+        return mTrackLog;
+    }
+
+    public TripStats getTripStats() {
+        return mTripStats;
+    }
+
+    public Looper getLooper() {
+        //Looper del hilo de ubicaciones, para que las pantallas ejecuten ahi su trabajo.
+        return mLocationThread.getLooper();
+    }
+
+    private void dispatch(Location location) {
+        //Entrega la misma ubicación a todos los observadores, en el hilo de ubicaciones.
+        LocationListener[] observers;
+        synchronized (this) {
+            observers = mDispatchList;
+        }
+        for (LocationListener observer : observers) {
+            observer.onLocationChanged(location);
+        }
+    }
+
+    public synchronized int getObserverCount() {
+        return mObservers.size();
+    }
+}
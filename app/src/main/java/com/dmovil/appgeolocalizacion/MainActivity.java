@@ -2,18 +2,22 @@ package com.dmovil.appgeolocalizacion;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.app.ActivityCompat;
 
 import android.Manifest;
 import android.app.Activity;
+import android.content.DialogInterface;
 import android.content.Intent;
 import android.content.IntentSender;
 import android.content.pm.PackageManager;
-import android.location.Address;
-import android.location.Geocoder;
 import android.location.Location;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
 import android.util.Log;
 import android.view.View;
 import android.widget.Button;
@@ -32,9 +36,16 @@ import com.google.android.gms.location.LocationSettingsRequest;
 import com.google.android.gms.location.LocationSettingsResult;
 import com.google.android.gms.location.LocationSettingsStatusCodes;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
 import java.io.IOException;
-import java.util.List;
-import java.util.Locale;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Calendar;
 
 public class MainActivity extends AppCompatActivity implements
         GoogleApiClient.ConnectionCallbacks,
@@ -43,6 +54,8 @@ public class MainActivity extends AppCompatActivity implements
 
     //Declaracion de Boton
     private Button irMapa;
+    //Boton para iniciar o detener el rastreo en segundo plano
+    private Button mTrackingButton;
 
     private static final String TAG = MainActivity.class.getSimpleName();
 
@@ -53,15 +66,78 @@ public class MainActivity extends AppCompatActivity implements
 
     // Location API
     private GoogleApiClient mGoogleApiClient;
-    private LocationRequest mLocationRequest;
+    private volatile LocationRequest mLocationRequest;
     private LocationSettingsRequest mLocationSettingsRequest;
     private Location mLastLocation;
+    //Suscripción compartida con el resto de las pantallas.
+    private LocationRepository mLocationRepository;
+    private boolean mObservingLocation;
+    //Ajusta la frecuencia y prioridad de las peticiones segun el movimiento del dispositivo.
+    private final MotionScheduler mMotionScheduler =
+            new MotionScheduler(MotionScheduler.MotionState.DRIVING);
 
     // UI Declaracion de los TextView
     private TextView mLatitude;
     private TextView mLongitude;
     private TextView direction;
 
+    //Aplica los cambios de los TextView una sola vez por cuadro y solo si cambiaron.
+    private CoordinatesRenderer mCoordinatesRenderer;
+
+    // Busqueda de direcciones fuera del hilo principal
+    private GeocodingPipeline mGeocodingPipeline;
+
+    //Las ubicaciones se procesan en el hilo de ubicaciones y solo la mas reciente, ya lista
+    // para mostrarse, pasa al hilo principal por medio del buzon.
+    private final SnapshotMailbox<LocationSnapshot> mUiMailbox = new SnapshotMailbox<>();
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final Runnable mRenderSnapshot = new Runnable() {
+        @Override
+        public void run() {
+            LocationSnapshot snapshot = mUiMailbox.take();
+            if (snapshot != null) {
+                mLastLocation = snapshot.location;
+                updateLocationUI(snapshot);
+            }
+        }
+    };
+
+    //Evalua cada ubicación contra las geocercas cargadas del archivo local.
+    public static final String GEOFENCES_FILE_NAME = "geofences.csv";
+    private GeofenceEngine mGeofenceEngine;
+
+    //Ultima ubicación y direccion guardadas en disco para mostrarlas al arrancar.
+    public static final String LAST_FIX_FILE_NAME = "last-fix.bin";
+    private LastFixStore mLastFixStore;
+    private boolean mFirstFixShown;
+
+    //Estadisticas del viaje actual; las lleva el repositorio de ubicaciones y aqui solo se
+    // muestran junto con las coordenadas. Mantener presionado el texto empieza un viaje nuevo.
+    private TextView mTripView;
+    private final StringBuilder mTripText = new StringBuilder(128);
+
+    //Capa de depuracion con las metricas del procesamiento de ubicaciones.
+    public static final long METRICS_REFRESH_MILLIS = 1000;
+    private TextView mMetricsView;
+    private final Runnable mRefreshMetrics = new Runnable() {
+        @Override
+        public void run() {
+            mMetricsView.setText(PipelineMetrics.get().summary());
+            mMainHandler.postDelayed(this, METRICS_REFRESH_MILLIS);
+        }
+    };
+
+    //Solo en depuracion: reproduce un recorrido grabado (GPX, NMEA o un directorio de
+    // TrackLog) en lugar del GPS, por ejemplo con
+    // adb shell am start -n <paquete>/.MainActivity --es replay <ruta> --ef replay_speed 10
+    public static final String EXTRA_REPLAY_PATH = "replay";
+    public static final String EXTRA_REPLAY_SPEED = "replay_speed";
+
+    //Exportacion del recorrido: buffer del archivo y tolerancia de la version simplificada.
+    public static final int EXPORT_BUFFER_CHARS = 64 * 1024;
+    public static final double EXPORT_TOLERANCE_METERS = 5;
+    public static final long EXPORT_LAST_HOUR_MILLIS = 60 * 60 * 1000;
+
     // Códigos de petición
     public static final int REQUEST_LOCATION = 1;
     public static final int REQUEST_CHECK_SETTINGS = 2;
@@ -83,24 +159,338 @@ public class MainActivity extends AppCompatActivity implements
             }
         });
 
+        //El rastreo en segundo plano sigue guardando el recorrido con la pantalla apagada, en
+        // un servicio en primer plano que recibe las ubicaciones por lotes.
+        mTrackingButton = findViewById(R.id.btn_tracking);
+        mTrackingButton.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                toggleBackgroundTracking();
+            }
+        });
+
+        //Exporta el recorrido guardado a GPX o GeoJSON en segundo plano.
+        findViewById(R.id.btn_export).setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                showExportDialog();
+            }
+        });
+
         // Referencias UI
         mLatitude = findViewById(R.id.tv_latitude);
         mLongitude = findViewById(R.id.tv_longitude);
         direction = findViewById(R.id.tv_direction);
+        mTripView = findViewById(R.id.tv_trip);
+        mTripView.setOnLongClickListener(new View.OnLongClickListener() {
+            @Override
+            public boolean onLongClick(View v) {
+                mLocationRepository.getTripStats().reset();
+                showTripStats();
+                Toast.makeText(MainActivity.this, "Nuevo viaje", Toast.LENGTH_SHORT).show();
+                return true;
+            }
+        });
+        mMetricsView = findViewById(R.id.tv_metrics);
+        if (BuildConfig.DEBUG) {
+            //Solo en depuracion: se muestran las metricas y al mantener presionado se guardan.
+            mMetricsView.setVisibility(View.VISIBLE);
+            mMetricsView.setOnLongClickListener(new View.OnLongClickListener() {
+                @Override
+                public boolean onLongClick(View v) {
+                    dumpMetrics();
+                    return true;
+                }
+            });
+        }
+        mCoordinatesRenderer = new CoordinatesRenderer(mLatitude, mLongitude, direction,
+                CoordinateFormat.DISPLAY_DECIMALS);
+
+        //Las direcciones se resuelven en segundo plano y solo el resultado vuelve al hilo
+        // principal para mostrarse en el TextView.
+        mGeocodingPipeline = new GeocodingPipeline(createReverseGeocoder(), AddressCache.get(this),
+                new GeocodingPipeline.Callback() {
+                    @Override
+                    public void onAddressResolved(String address) {
+                        mCoordinatesRenderer.setAddress("Mi direccion es: \n" + address);
+                        if (!mLocationRepository.isReplaying()) {
+                            mLastFixStore.saveAddress(address);
+                        }
+                    }
+                });
 
-        // Establecer punto de entrada para la API de ubicación
-        buildGoogleApiClient();
-
-        // Crear configuración de peticiones
-        createLocationRequest();
+        mLocationRepository = LocationRepository.get(this);
 
-        // Crear opciones de peticiones
-        buildLocationSettingsRequest();
+        //Las geocercas se cargan en segundo plano; mientras tanto el motor esta vacio.
+        mGeofenceEngine = new GeofenceEngine(new GeofenceEngine.Listener() {
+            @Override
+            public void onGeofenceEvent(Geofence geofence, int transition, long time) {
+                onGeofenceTransition(geofence, transition);
+            }
+        });
+        loadGeofences();
 
-        // Verificar ajustes de ubicación actuales
-        checkLocationSettings();
+        //Se muestra la ultima ubicación guardada desde el primer cuadro, sin esperar a la API.
+        mLastFixStore = new LastFixStore(new File(getFilesDir(), LAST_FIX_FILE_NAME));
+        showLastKnownFix();
 
         updateValuesFromBundle(savedInstanceState);
+
+        if (BuildConfig.DEBUG && savedInstanceState == null) {
+            startReplayFromIntent(getIntent());
+        }
+
+        //La conexión con la API de Google y la verificación de ajustes se hacen después de
+        // dibujar el primer cuadro, fuera del camino critico del arranque.
+        getWindow().getDecorView().post(new Runnable() {
+            @Override
+            public void run() {
+                if (isFinishing() || isDestroyed()) {
+                    return;
+                }
+                // Establecer punto de entrada para la API de ubicación
+                buildGoogleApiClient();
+
+                // Crear configuración de peticiones
+                createLocationRequest();
+
+                // Crear opciones de peticiones
+                buildLocationSettingsRequest();
+
+                // Verificar ajustes de ubicación actuales
+                checkLocationSettings();
+            }
+        });
+    }
+
+    private void showLastKnownFix() {
+        //Lee el archivo guardado (unos pocos bytes) y muestra la ubicación y la direccion.
+        LastFixStore.Snapshot snapshot = mLastFixStore.read();
+        if (snapshot == null) {
+            return;
+        }
+        mCoordinatesRenderer.setCoordinates(snapshot.latitude, snapshot.longitude);
+        if (snapshot.address != null) {
+            mCoordinatesRenderer.setAddress("Mi direccion es: \n" + snapshot.address);
+        }
+        logTimeToCoordinate("guardada");
+    }
+
+    private void toggleBackgroundTracking() {
+        //El servicio cambia de estado de forma asincrona, asi que el boton se actualiza con el
+        // estado pedido y no con el que reporta el servicio en este momento.
+        boolean start = !TrackingService.isRunning();
+        if (!start) {
+            TrackingService.stop(this);
+        } else if (isLocationPermissionGranted()) {
+            TrackingService.start(this);
+        } else {
+            manageDeniedPermission();
+            return;
+        }
+        updateTrackingButton(start);
+    }
+
+    private void updateTrackingButton(boolean running) {
+        mTrackingButton.setText(running ? "Detener rastreo" : "Rastrear en segundo plano");
+    }
+
+    private void showExportDialog() {
+        final String[] options = {"GPX", "GPX simplificado", "GeoJSON"};
+        new AlertDialog.Builder(this)
+                .setTitle("Exportar recorrido")
+                .setItems(options, new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+                        if (which == 2) {
+                            showExportRangeDialog(TrackExporter.FORMAT_GEOJSON, 0, ".geojson");
+                        } else {
+                            showExportRangeDialog(TrackExporter.FORMAT_GPX,
+                                    which == 1 ? EXPORT_TOLERANCE_METERS : 0, ".gpx");
+                        }
+                    }
+                })
+                .show();
+    }
+
+    private void showExportRangeDialog(final int format, final double tolerance,
+                                       final String extension) {
+        //Segundo paso: que parte del recorrido se exporta. Los limites se calculan al elegir.
+        final String[] options = {"Todo el recorrido", "Ultima hora", "Hoy"};
+        new AlertDialog.Builder(this)
+                .setTitle("Periodo")
+                .setItems(options, new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+                        long now = System.currentTimeMillis();
+                        long from = Long.MIN_VALUE;
+                        if (which == 1) {
+                            from = now - EXPORT_LAST_HOUR_MILLIS;
+                        } else if (which == 2) {
+                            //Desde la medianoche en la zona horaria del dispositivo.
+                            Calendar midnight = Calendar.getInstance();
+                            midnight.set(Calendar.HOUR_OF_DAY, 0);
+                            midnight.set(Calendar.MINUTE, 0);
+                            midnight.set(Calendar.SECOND, 0);
+                            midnight.set(Calendar.MILLISECOND, 0);
+                            from = midnight.getTimeInMillis();
+                        }
+                        exportTrack(format, tolerance, extension, from, Long.MAX_VALUE);
+                    }
+                })
+                .show();
+    }
+
+    private void exportTrack(int format, double tolerance, String extension,
+                             long fromTime, long toTime) {
+        //El recorrido se lee y se escribe por partes en un hilo aparte: la memoria usada no
+        // depende del numero de puntos y el hilo principal no espera.
+        final TrackExporter exporter = new TrackExporter(format)
+                .setTolerance(tolerance)
+                .setTimeRange(fromTime, toTime);
+        final File file = new File(getExternalFilesDir(null),
+                "recorrido-" + System.currentTimeMillis() + extension);
+        final TrackLog log = mLocationRepository.getTrackLog();
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                String message;
+                try {
+                    Writer writer = new BufferedWriter(new OutputStreamWriter(
+                            new FileOutputStream(file), "UTF-8"), EXPORT_BUFFER_CHARS);
+                    long points;
+                    try {
+                        points = exporter.export(log, writer);
+                    } finally {
+                        writer.close();
+                    }
+                    message = points + " puntos exportados a " + file.getPath();
+                } catch (IOException e) {
+                    file.delete();
+                    message = "No se pudo exportar el recorrido";
+                }
+                final String text = message;
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        Toast.makeText(MainActivity.this, text, Toast.LENGTH_LONG).show();
+                    }
+                });
+            }
+        }, "track-export").start();
+    }
+
+    private void startReplayFromIntent(Intent intent) {
+        //Lee el recorrido en segundo plano y lo entrega al repositorio, que lo reproduce por el
+        // mismo camino que las ubicaciones reales. Velocidad 0 es lo mas rapido posible.
+        final String path = intent.getStringExtra(EXTRA_REPLAY_PATH);
+        if (path == null) {
+            return;
+        }
+        final float speed = intent.getFloatExtra(EXTRA_REPLAY_SPEED, 1f);
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    mLocationRepository.startReplay(TraceReader.read(new File(path)), speed);
+                } catch (IOException | IllegalArgumentException e) {
+                    Log.d(TAG, "No se pudo reproducir el recorrido " + path + ": " + e.getMessage());
+                }
+            }
+        }, "replay-loader").start();
+    }
+
+    private void dumpMetrics() {
+        //Guarda las metricas en un archivo de texto en el directorio externo de la app, fuera
+        // del hilo principal.
+        final File file = new File(getExternalFilesDir(null),
+                "metricas-" + System.currentTimeMillis() + ".txt");
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                String message;
+                try {
+                    Writer writer = new BufferedWriter(new FileWriter(file));
+                    try {
+                        PipelineMetrics.get().dump(writer);
+                    } finally {
+                        writer.close();
+                    }
+                    message = "Metricas guardadas en " + file.getPath();
+                } catch (IOException e) {
+                    message = "No se pudieron guardar las metricas";
+                }
+                final String text = message;
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        Toast.makeText(MainActivity.this, text, Toast.LENGTH_LONG).show();
+                    }
+                });
+            }
+        }, "metrics-dump").start();
+    }
+
+    private void logTimeToCoordinate(String source) {
+        //Tiempo desde el inicio del proceso hasta mostrar una coordenada.
+        Log.d(TAG, "Tiempo hasta la primera coordenada (" + source + "): "
+                + (SystemClock.elapsedRealtime() - Process.getStartElapsedRealtime()) + " ms");
+    }
+
+    private ReverseGeocoder createReverseGeocoder() {
+        //Si existe el indice local de direcciones se consulta primero, sin red; el Geocoder de
+        // Android queda como respaldo cuando no hay una direccion cercana en el indice. El
+        // indice se abre en el hilo de geocodificacion con la primera consulta.
+        File index = new File(getFilesDir(), OfflineReverseGeocoder.DEFAULT_FILE_NAME);
+        return new FallbackReverseGeocoder(OfflineReverseGeocoder.openLazily(index),
+                new PlatformReverseGeocoder(this));
+    }
+
+    private void loadGeofences() {
+        //Lee el archivo de geocercas fuera del hilo principal y reemplaza el indice del motor.
+        final File file = new File(getFilesDir(), GEOFENCES_FILE_NAME);
+        if (!file.exists()) {
+            return;
+        }
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    BufferedReader reader = new BufferedReader(new FileReader(file));
+                    try {
+                        mGeofenceEngine.load(GeofenceEngine.readGeofences(reader));
+                    } finally {
+                        reader.close();
+                    }
+                    Log.d(TAG, "Geocercas cargadas: " + mGeofenceEngine.size());
+                } catch (IOException e) {
+                    Log.d(TAG, "No se pudieron cargar las geocercas: " + e.getMessage());
+                }
+            }
+        }, "geofence-loader").start();
+    }
+
+    private void onGeofenceTransition(final Geofence geofence, int transition) {
+        //Se llama en el hilo de ubicaciones; el aviso se muestra en el hilo principal.
+        final String message;
+        switch (transition) {
+            case GeofenceEngine.TRANSITION_ENTER:
+                message = "Entraste a " + geofence.getId();
+                break;
+            case GeofenceEngine.TRANSITION_EXIT:
+                message = "Saliste de " + geofence.getId();
+                break;
+            default:
+                message = "Sigues en " + geofence.getId();
+                break;
+        }
+        Log.d(TAG, message);
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                Toast.makeText(MainActivity.this, message, Toast.LENGTH_SHORT).show();
+            }
+        });
     }
 
     private synchronized void buildGoogleApiClient() {
@@ -114,11 +504,9 @@ public class MainActivity extends AppCompatActivity implements
     }
 
     private void createLocationRequest() {
-        //Crea la configuracion de peticiones y establece los intervalos de actualizacion.
-        mLocationRequest = new LocationRequest()
-                .setInterval(UPDATE_INTERVAL)
-                .setFastestInterval(UPDATE_FASTEST_INTERVAL)
-                .setPriority(LocationRequest.PRIORITY_HIGH_ACCURACY);
+        //Crea la configuracion de peticiones con los intervalos de actualizacion, la prioridad
+        // y el desplazamiento minimo que corresponden al estado de movimiento actual.
+        mLocationRequest = mMotionScheduler.createLocationRequest();
     }
 
     private void buildLocationSettingsRequest() {
@@ -180,8 +568,15 @@ public class MainActivity extends AppCompatActivity implements
             if (ActivityCompat.checkSelfPermission(this, Manifest.permission.ACCESS_FINE_LOCATION) != PackageManager.PERMISSION_GRANTED && ActivityCompat.checkSelfPermission(this, Manifest.permission.ACCESS_COARSE_LOCATION) != PackageManager.PERMISSION_GRANTED) {
                 return;
             }
-            LocationServices.FusedLocationApi.requestLocationUpdates(
-                    mGoogleApiClient, mLocationRequest, this);
+            //La peticion se hace por medio del repositorio compartido, que mantiene una sola
+            // suscripción para todas las pantallas.
+            mLocationRepository.setLocationRequest(mLocationRequest);
+            if (!mObservingLocation) {
+                mLocationRepository.addObserver(this);
+                mObservingLocation = true;
+            } else {
+                mLocationRepository.refresh();
+            }
         } else {
             //Si no tiene los permisos de localización llama al método manageDeniedPermission
             manageDeniedPermission();
@@ -216,23 +611,35 @@ public class MainActivity extends AppCompatActivity implements
     protected void onPause() {
         //Detiene las peticiones de ubicacion si la aplicación pasa a segundo plano
         super.onPause();
-        if (mGoogleApiClient.isConnected()) {
+        mLastFixStore.flush();
+        mMainHandler.removeCallbacks(mRefreshMetrics);
+        if (mGoogleApiClient != null && mGoogleApiClient.isConnected()) {
             //Si el objeto de GoogleApiClient no esta conectado llama a stopLocationUpdates.
             stopLocationUpdates();
         }
     }
 
     private void stopLocationUpdates() {
-        //Detiene la actualización de la ubicación
-        LocationServices.FusedLocationApi
-                .removeLocationUpdates(mGoogleApiClient, this);
+        //Deja de observar las ubicaciones; el repositorio detiene el proveedor si ya no quedan
+        // observadores.
+        if (mObservingLocation) {
+            mLocationRepository.removeObserver(this);
+            mObservingLocation = false;
+        }
     }
 
     @Override
     protected void onResume() {
         // Reinicia las peticiones de ubicacion.
         super.onResume();
-        if (mGoogleApiClient.isConnected()) {
+        //El rastreo pudo detenerse desde la notificacion mientras la pantalla no estaba visible.
+        updateTrackingButton(TrackingService.isRunning());
+        //El viaje siguio sumando ubicaciones mientras la pantalla no estaba visible.
+        showTripStats();
+        if (BuildConfig.DEBUG) {
+            mMainHandler.post(mRefreshMetrics);
+        }
+        if (mGoogleApiClient != null && mGoogleApiClient.isConnected()) {
             //Si el objeto de GoogleApiClient esta conectado llama a startLocationUpdates.
             startLocationUpdates();
         }
@@ -249,7 +656,7 @@ public class MainActivity extends AppCompatActivity implements
     private void processLastLocation() {
         getLastLocation();
         if (mLastLocation != null) {
-            updateLocationUI();
+            publishLocation(mLastLocation);
         }
     }
 
@@ -269,34 +676,53 @@ public class MainActivity extends AppCompatActivity implements
         }
     }
 
-    private void updateLocationUI() {
-        //Establece la longitud y latitud en los TextView llamando al metodo getLatitude y
-        // getLongitude del objeto mLastLocation de la clase LastLocation y convirtiendo el
-        // valor double en una cadena de texto con el metodo valueOf de la clase String.
-        mLatitude.setText(String.valueOf(mLastLocation.getLatitude()));
-        mLongitude.setText(String.valueOf(mLastLocation.getLongitude()));
+    private void publishLocation(Location location) {
+        //Puede llamarse desde cualquier hilo. Pide la direccion y deja la ubicación en el
+        // buzon; si llegan varias ubicaciones antes de que el hilo principal
+        // las muestre, solo se muestra la ultima.
+        LocationSnapshot snapshot = new LocationSnapshot(location);
 
         //Obtener la direccion de la calle a partir de la latitud y la longitud
         //En la conficion comprueba que la latitud y la longitud sean diferentes a cero.
-        if (mLastLocation.getLatitude() != 0.0 && mLastLocation.getLongitude() != 0.0) {
-            try {
-                //Crea un objeto de la clase Geocoder para obtener la dirección.
-                Geocoder geocoder = new Geocoder(this, Locale.getDefault());
-                //Obtiene la latitud y longitud, y las agrega a una lista de la clase Address.
-                List<Address> list = geocoder.getFromLocation(
-                        mLastLocation.getLatitude(), mLastLocation.getLongitude(), 1);
-                if (!list.isEmpty()) {
-                    //Si la lista no esta vacía pasa la direccion obtenida a una cadena de texto
-                    //que manda al objeto direccion de TextView.
-                    Address dirCalle = list.get(0);
-                    direction.setText("Mi direccion es: \n"
-                            + dirCalle.getAddressLine(0));
-                }
-            } catch (IOException e) {
-                //Captura una excepción de tipo IOException.
-                e.printStackTrace();
-            }
+        if (location.getLatitude() != 0.0 && location.getLongitude() != 0.0) {
+            //La busqueda se hace en segundo plano; si llegan varias ubicaciones seguidas solo
+            // se resuelve la mas reciente.
+            mGeocodingPipeline.request(location.getLatitude(), location.getLongitude());
         }
+
+        if (mUiMailbox.post(snapshot)) {
+            mMainHandler.post(mRenderSnapshot);
+        } else {
+            PipelineMetrics.get().countFixCoalesced();
+        }
+
+        //Se guarda para el siguiente arranque; la escritura al disco se hace despues. Las
+        // ubicaciones de una reproduccion no reemplazan la ultima ubicación real.
+        if (LocationRepository.REPLAY_PROVIDER.equals(location.getProvider())) {
+            return;
+        }
+        mLastFixStore.save(location.getLatitude(), location.getLongitude(),
+                location.getTime(), location.getAccuracy());
+    }
+
+    private void updateLocationUI(LocationSnapshot snapshot) {
+        //Se ejecuta en el hilo principal. Las coordenadas se comparan a la precision de
+        // pantalla y los TextView solo se actualizan en el siguiente cuadro si cambiaron.
+        mCoordinatesRenderer.setCoordinates(snapshot.location.getLatitude(),
+                snapshot.location.getLongitude());
+        //Tiempo desde que se recibio la ubicación hasta que el hilo principal la toma.
+        PipelineMetrics.get().recordLatency(PipelineMetrics.UI_UPDATE,
+                SystemClock.elapsedRealtimeNanos() - snapshot.receivedNanos);
+        showTripStats();
+        if (!mFirstFixShown) {
+            mFirstFixShown = true;
+            logTimeToCoordinate("en vivo");
+        }
+    }
+
+    private void showTripStats() {
+        mTripText.setLength(0);
+        mTripView.setText(mLocationRepository.getTripStats().snapshot().appendTo(mTripText));
     }
 
     @Override
@@ -352,11 +778,23 @@ public class MainActivity extends AppCompatActivity implements
                 //Recupera la ubicacion guardada y la actualiza con el método updateLocationUI.
                 mLastLocation = savedInstanceState.getParcelable(LOCATION_KEY);
 
-                updateLocationUI();
+                if (mLastLocation != null) {
+                    publishLocation(mLastLocation);
+                }
             }
         }
     }
 
+    @Override
+    protected void onDestroy() {
+        //Detiene el hilo de busqueda de direcciones y descarta lo pendiente para la UI.
+        mGeocodingPipeline.shutdown();
+        mMainHandler.removeCallbacks(mRenderSnapshot);
+        mCoordinatesRenderer.cancel();
+        mLastFixStore.release();
+        super.onDestroy();
+    }
+
     @Override
     public void onConnectionSuspended(int i) {
         //Se llama cuando la conexión con la Api de Google se pierde.
@@ -376,11 +814,35 @@ public class MainActivity extends AppCompatActivity implements
 
     @Override
     public void onLocationChanged(@NonNull Location location) {
-        //Se ejecuta cada vez que la ubicacion cambia.
-        Log.d(TAG, String.format("Nueva ubicación: (%s, %s)",
-                location.getLatitude(), location.getLongitude()));
-        //Pasa la nueva ubicacion al objeto mLastLocation y actualiza la ubicación en los TexView.
-        mLastLocation = location;
-        updateLocationUI();
-    }
-}
\ No newline at end of file
+        //Se ejecuta cada vez que la ubicacion cambia, en el hilo de ubicaciones del repositorio.
+        if (BuildConfig.DEBUG) {
+            Log.d(TAG, "Nueva ubicación: (" + location.getLatitude() + ", "
+                    + location.getLongitude() + ")");
+        }
+        //Prepara la ubicacion para los TextView y la deja lista para el hilo principal.
+        publishLocation(location);
+
+        //Solo se revisan las geocercas cercanas a la ubicación.
+        mGeofenceEngine.evaluate(location.getLatitude(), location.getLongitude(), location.getTime());
+
+        //Si cambia el estado de movimiento (quieto, caminando o en auto) se vuelve a hacer la
+        // peticion con la nueva configuracion; la peticion anterior se reemplaza.
+        if (mMotionScheduler.onLocation(location.getLatitude(), location.getLongitude(),
+                location.getTime(), location.hasSpeed(), location.getSpeed())) {
+            Log.d(TAG, "Nuevo estado de movimiento: " + mMotionScheduler.getState());
+            createLocationRequest();
+            mLocationRepository.setLocationRequest(mLocationRequest);
+        }
+    }
+
+    private static final class LocationSnapshot {
+        //Ubicación lista para mostrarse en el hilo principal.
+        final Location location;
+        final long receivedNanos;
+
+        LocationSnapshot(Location location) {
+            this.location = location;
+            this.receivedNanos = SystemClock.elapsedRealtimeNanos();
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package com.dmovil.appgeolocalizacion;
+
+public class MapMatcher {
+
+    //Maximo de segmentos candidatos por ubicación; acota el trabajo de cada paso a
+    // MAX_CANDIDATES busquedas de ruta y MAX_CANDIDATES x MAX_CANDIDATES transiciones.
+    public static final int MAX_CANDIDATES = 8;
+    //Ubicaciones que se guardan para corregir hacia atras. Cada ubicación se confirma cuando
+    // quedan WINDOW - 1 ubicaciones mas nuevas, con el mejor camino que llega a la ultima.
+    public static final int WINDOW = 4;
+    //Radio de busqueda segun la precision de la ubicación, con limites.
+    public static final double MIN_SEARCH_RADIUS = 25;
+    public static final double MAX_SEARCH_RADIUS = 100;
+    //Desviacion minima del error de posicion (metros) para la probabilidad de emision.
+    public static final double MIN_SIGMA = 5;
+    //Escala (metros) de la diferencia entre la distancia por calle entre dos candidatos y la
+    // distancia en linea recta entre las dos ubicaciones.
+    public static final double BETA = 10;
+    //Las rutas se buscan hasta el doble de la distancia entre ubicaciones mas este margen;
+    // un candidato que no se alcanza por calle no puede seguir al anterior.
+    public static final double ROUTE_MARGIN = 2 * MAX_SEARCH_RADIUS;
+    //Un hueco mayor a esto reinicia el emparejamiento.
+    public static final long MAX_GAP_MILLIS = 30000;
+
+    private final RoadNetwork mNetwork;
+    private final RoadNetwork.Router mRouter;
+
+    //Ventana de pasos de Viterbi en un anillo: candidatos de cada ubicación, el candidato
+    // anterior que mejor llega a cada uno y el puntaje acumulado. La memoria y el trabajo por
+    // ubicación no crecen con el recorrido.
+    private final Step[] mSteps = new Step[WINDOW];
+    private int mFirst;
+    private int mCount;
+    private double mPreviousLat;
+    private double mPreviousLon;
+    private final double[] mRoutes = new double[MAX_CANDIDATES * MAX_CANDIDATES];
+
+    //Ubicaciones confirmadas en la ultima llamada a match, de la mas antigua a la mas nueva.
+    private final TrackBuffer mCommitted = new TrackBuffer(WINDOW, 0);
+
+    private boolean mMatched;
+    private double mMatchedLat;
+    private double mMatchedLon;
+
+    public MapMatcher(RoadNetwork network) {
+        mNetwork = network;
+        mRouter = network.new Router();
+        for (int i = 0; i < WINDOW; i++) {
+            mSteps[i] = new Step();
+        }
+    }
+
+    public boolean match(double latitude, double longitude, long time, float accuracy) {
+        //Agrega la ubicación a la ventana con un paso de Viterbi: la probabilidad de cada
+        // candidato combina su distancia a la ubicación (emision) y que tan creible es llegar
+        // a el por calle desde los candidatos anteriores (transicion). La posicion actual es
+        // el mejor candidato de este paso; las ubicaciones que salen de la ventana se
+        // confirman en getCommitted(). Devuelve false si no hay calles cerca; en ese caso se
+        // usa la ubicación sin ajustar.
+        mCommitted.clear();
+        double sigma = Math.max(MIN_SIGMA, accuracy);
+        double radius = Math.max(MIN_SEARCH_RADIUS, Math.min(MAX_SEARCH_RADIUS, 3 * sigma));
+        Step last = mCount > 0 ? step(mCount - 1) : null;
+        boolean continues = last != null && time > last.time
+                && time - last.time <= MAX_GAP_MILLIS;
+        if (!continues) {
+            commitAll();
+        } else if (mCount == WINDOW) {
+            commitOldest();
+        }
+
+        Step current = mSteps[(mFirst + mCount) % WINDOW];
+        mNetwork.findCandidates(latitude, longitude, radius, current.candidates);
+        RoadNetwork.Candidates candidates = current.candidates;
+        if (candidates.size == 0) {
+            commitAll();
+            mMatched = false;
+            mMatchedLat = latitude;
+            mMatchedLon = longitude;
+            return false;
+        }
+        current.time = time;
+        current.accuracy = accuracy;
+
+        boolean linked = false;
+        if (continues) {
+            linked = transition(last, current, sigma,
+                    GeoMath.distance(mPreviousLat, mPreviousLon, latitude, longitude));
+            if (!linked) {
+                //Ningun candidato se alcanza por calle desde el paso anterior: se confirma lo
+                // pendiente y se empieza una cadena nueva con esta ubicación.
+                commitAll();
+                current = mSteps[mFirst];
+                mNetwork.findCandidates(latitude, longitude, radius, current.candidates);
+                candidates = current.candidates;
+                current.time = time;
+                current.accuracy = accuracy;
+            }
+        }
+        if (!linked) {
+            for (int c = 0; c < candidates.size; c++) {
+                double d = candidates.distance[c] / sigma;
+                current.scores[c] = -0.5 * d * d;
+                current.back[c] = -1;
+            }
+        }
+
+        int best = 0;
+        for (int c = 1; c < candidates.size; c++) {
+            if (current.scores[c] > current.scores[best]) {
+                best = c;
+            }
+        }
+        //Se normaliza respecto al mejor para que los puntajes no crezcan sin limite.
+        double bestScore = current.scores[best];
+        for (int c = 0; c < candidates.size; c++) {
+            current.scores[c] -= bestScore;
+        }
+        mCount++;
+        mMatched = true;
+        mMatchedLat = candidates.latitude[best];
+        mMatchedLon = candidates.longitude[best];
+        mPreviousLat = latitude;
+        mPreviousLon = longitude;
+        return true;
+    }
+
+    private boolean transition(Step previous, Step current, double sigma, double fixDistance) {
+        //Distancia por calle de cada candidato anterior a cada candidato actual, con una
+        // busqueda acotada por candidato anterior.
+        RoadNetwork.Candidates from = previous.candidates;
+        RoadNetwork.Candidates to = current.candidates;
+        double limit = 2 * fixDistance + ROUTE_MARGIN;
+        for (int p = 0; p < from.size; p++) {
+            mRouter.from(from.segment[p], from.offset[p], limit);
+            for (int c = 0; c < to.size; c++) {
+                mRoutes[p * MAX_CANDIDATES + c] = mRouter.distanceTo(to.segment[c], to.offset[c]);
+            }
+        }
+        boolean linked = false;
+        for (int c = 0; c < to.size; c++) {
+            double d = to.distance[c] / sigma;
+            double emission = -0.5 * d * d;
+            double transition = Double.NEGATIVE_INFINITY;
+            int back = -1;
+            for (int p = 0; p < from.size; p++) {
+                double route = mRoutes[p * MAX_CANDIDATES + c];
+                if (route == Double.POSITIVE_INFINITY) {
+                    continue;
+                }
+                double score = previous.scores[p] - Math.abs(fixDistance - route) / BETA;
+                if (score > transition) {
+                    transition = score;
+                    back = p;
+                }
+            }
+            current.scores[c] = transition + emission;
+            current.back[c] = back;
+            linked |= back >= 0;
+        }
+        return linked;
+    }
+
+    private void commitOldest() {
+        //Confirma la ubicación mas antigua siguiendo hacia atras el mejor camino que llega a
+        // la ultima ubicación de la ventana.
+        Step oldest = mSteps[mFirst];
+        int index = backtrack(0);
+        mCommitted.append(oldest.candidates.latitude[index], oldest.candidates.longitude[index],
+                oldest.time, oldest.accuracy, 0f);
+        mFirst = (mFirst + 1) % WINDOW;
+        mCount--;
+    }
+
+    private void commitAll() {
+        while (mCount > 0) {
+            commitOldest();
+        }
+        mFirst = 0;
+    }
+
+    private int backtrack(int target) {
+        //Indice del candidato del paso target (0 es el mas antiguo) en el mejor camino que
+        // termina en el mejor candidato del ultimo paso.
+        Step last = step(mCount - 1);
+        int index = 0;
+        for (int c = 1; c < last.candidates.size; c++) {
+            if (last.scores[c] > last.scores[index]) {
+                index = c;
+            }
+        }
+        for (int s = mCount - 1; s > target; s--) {
+            int back = step(s).back[index];
+            if (back < 0) {
+                //El paso s empezo una cadena nueva; no deberia quedar en la ventana.
+                return 0;
+            }
+            index = back;
+        }
+        return index;
+    }
+
+    private Step step(int i) {
+        return mSteps[(mFirst + i) % WINDOW];
+    }
+
+    public TrackBuffer getCommitted() {
+        //Ubicaciones ajustadas que ya no van a cambiar, confirmadas por la ultima llamada a
+        // match o flush. La velocidad no se conserva.
+        return mCommitted;
+    }
+
+    public void flush() {
+        //Confirma todas las ubicaciones pendientes de la ventana, por ejemplo al terminar.
+        mCommitted.clear();
+        commitAll();
+    }
+
+    public double getMatchedLatitude() {
+        return mMatchedLat;
+    }
+
+    public double getMatchedLongitude() {
+        return mMatchedLon;
+    }
+
+    public boolean isMatched() {
+        return mMatched;
+    }
+
+    public void reset() {
+        //Olvida la ventana sin confirmar lo pendiente.
+        mFirst = 0;
+        mCount = 0;
+        mMatched = false;
+        mCommitted.clear();
+    }
+
+    private static final class Step {
+        final RoadNetwork.Candidates candidates = new RoadNetwork.Candidates(MAX_CANDIDATES);
+        final double[] scores = new double[MAX_CANDIDATES];
+        //Candidato del paso anterior en el mejor camino; -1 si el paso empieza una cadena.
+        final int[] back = new int[MAX_CANDIDATES];
+        long time;
+        float accuracy;
+    }
+}
@@ -0,0 +1,162 @@
+package com.dmovil.appgeolocalizacion;
+
+import android.graphics.Point;
+import android.view.Choreographer;
+import android.view.View;
+
+import com.google.android.gms.maps.CameraUpdateFactory;
+import com.google.android.gms.maps.GoogleMap;
+import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.maps.model.LatLngBounds;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class MapRenderController implements Choreographer.FrameCallback {
+
+    //Margen que se agrega al area visible (fraccion del alto/ancho) para dibujar las capas.
+    public static final double VISIBLE_MARGIN = 0.5;
+    //Fraccion del mapa, centrada, dentro de la cual la posicion no mueve la camara.
+    public static final float DEAD_ZONE = 0.5f;
+
+    public interface FrameRenderer {
+        //Se llama una vez por cuadro, en el hilo principal, con cambios pendientes.
+        void renderFrame(MapRenderController controller);
+    }
+
+    private final GoogleMap mMap;
+    private final View mMapView;
+    private final FrameRenderer mRenderer;
+
+    //Area visible con margen; la lee el hilo de ubicaciones para recortar las capas.
+    private volatile LatLngBounds mRenderBounds;
+
+    private boolean mFrameScheduled;
+    private LatLng mPendingCameraTarget;
+
+    public MapRenderController(GoogleMap map, View mapView, FrameRenderer renderer) {
+        mMap = map;
+        mMapView = mapView;
+        mRenderer = renderer;
+    }
+
+    public void requestFrame() {
+        //Hilo principal. Todas las peticiones antes del siguiente cuadro se atienden juntas.
+        if (!mFrameScheduled) {
+            mFrameScheduled = true;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        mFrameScheduled = false;
+        mRenderer.renderFrame(this);
+        //A lo mucho un movimiento de camara por cuadro, con la ultima posicion pedida.
+        if (mPendingCameraTarget != null) {
+            mMap.moveCamera(CameraUpdateFactory.newLatLng(mPendingCameraTarget));
+            mPendingCameraTarget = null;
+        }
+    }
+
+    public void follow(LatLng position) {
+        //Pide centrar la camara en la posicion solo si salio de la zona muerta del centro; si
+        // la posicion sigue cerca del centro no se mueve la camara.
+        int width = mMapView.getWidth();
+        int height = mMapView.getHeight();
+        if (width > 0 && height > 0) {
+            Point point = mMap.getProjection().toScreenLocation(position);
+            float halfDeadX = width * DEAD_ZONE / 2;
+            float halfDeadY = height * DEAD_ZONE / 2;
+            if (Math.abs(point.x - width / 2f) <= halfDeadX
+                    && Math.abs(point.y - height / 2f) <= halfDeadY) {
+                return;
+            }
+        }
+        mPendingCameraTarget = position;
+    }
+
+    public boolean updateVisibleBounds() {
+        //Hilo principal, al detenerse la camara. Calcula el area visible con margen y
+        // devuelve true si cambio y hay que recortar de nuevo las capas.
+        LatLngBounds visible = mMap.getProjection().getVisibleRegion().latLngBounds;
+        double latMargin = (visible.northeast.latitude - visible.southwest.latitude) * VISIBLE_MARGIN;
+        double lonMargin = (visible.northeast.longitude - visible.southwest.longitude) * VISIBLE_MARGIN;
+        if (lonMargin < 0) {
+            //El area cruza el antimeridiano; no se recorta en longitud.
+            lonMargin = 180;
+        }
+        LatLngBounds bounds = new LatLngBounds(
+                new LatLng(Math.max(-90, visible.southwest.latitude - latMargin),
+                        Math.max(-180, visible.southwest.longitude - lonMargin)),
+                new LatLng(Math.min(90, visible.northeast.latitude + latMargin),
+                        Math.min(180, visible.northeast.longitude + lonMargin)));
+        boolean changed = !bounds.equals(mRenderBounds);
+        mRenderBounds = bounds;
+        return changed;
+    }
+
+    public List<List<LatLng>> clip(List<LatLng> points) {
+        //Puede llamarse desde cualquier hilo. Devuelve copias de los tramos de la linea que
+        // pasan por el area visible con margen. Donde la linea sale del area se corta: cada
+        // tramo conserva el segmento que cruza el borde y no se une con el siguiente, asi no
+        // se dibujan rectas entre puntos que no eran consecutivos.
+        LatLngBounds bounds = mRenderBounds;
+        List<List<LatLng>> pieces = new ArrayList<>();
+        int size = points.size();
+        if (bounds == null || size == 1) {
+            if (size > 0 && (bounds == null || bounds.contains(points.get(0)))) {
+                pieces.add(new ArrayList<>(points));
+            }
+            return pieces;
+        }
+        List<LatLng> piece = null;
+        for (int i = 0; i + 1 < size; i++) {
+            LatLng from = points.get(i);
+            LatLng to = points.get(i + 1);
+            if (!touches(bounds, from, to)) {
+                piece = null;
+                continue;
+            }
+            if (piece == null) {
+                piece = new ArrayList<>();
+                piece.add(from);
+                pieces.add(piece);
+            }
+            piece.add(to);
+        }
+        return pieces;
+    }
+
+    private static boolean touches(LatLngBounds bounds, LatLng from, LatLng to) {
+        //Un segmento se conserva si alguno de sus extremos esta dentro o si su rectangulo se
+        // cruza con el area; en el ultimo caso puede pasar cerca sin entrar, lo que solo
+        // agrega un segmento de mas.
+        if (bounds.contains(from) || bounds.contains(to)) {
+            return true;
+        }
+        if (Math.max(from.latitude, to.latitude) < bounds.southwest.latitude
+                || Math.min(from.latitude, to.latitude) > bounds.northeast.latitude) {
+            return false;
+        }
+        double west = Math.min(from.longitude, to.longitude);
+        double east = Math.max(from.longitude, to.longitude);
+        if (bounds.southwest.longitude <= bounds.northeast.longitude) {
+            return east >= bounds.southwest.longitude && west <= bounds.northeast.longitude;
+        }
+        //El area cruza el antimeridiano.
+        return east >= bounds.southwest.longitude || west <= bounds.northeast.longitude;
+    }
+
+    public LatLngBounds getRenderBounds() {
+        return mRenderBounds;
+    }
+
+    public void cancel() {
+        if (mFrameScheduled) {
+            mFrameScheduled = false;
+            Choreographer.getInstance().removeFrameCallback(this);
+        }
+        mPendingCameraTarget = null;
+    }
+}
@@ -6,15 +6,16 @@ import androidx.core.content.ContextCompat;
 import androidx.fragment.app.FragmentActivity;
 
 import android.Manifest;
-import android.content.Context;
 import android.content.pm.PackageManager;
+import android.graphics.Color;
 import android.location.Location;
-import android.location.LocationListener;
-import android.location.LocationManager;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
 import android.widget.Toast;
 
-import com.google.android.gms.maps.CameraUpdateFactory;
+import com.google.android.gms.location.LocationListener;
 import com.google.android.gms.maps.GoogleMap;
 import com.google.android.gms.maps.OnMapReadyCallback;
 import com.google.android.gms.maps.SupportMapFragment;
@@ -22,16 +23,77 @@ import com.google.android.gms.maps.model.CameraPosition;
 import com.google.android.gms.maps.model.LatLng;
 import com.google.android.gms.maps.model.Marker;
 import com.google.android.gms.maps.model.MarkerOptions;
+import com.google.android.gms.maps.model.Polyline;
+import com.google.android.gms.maps.model.PolylineOptions;
 import com.dmovil.appgeolocalizacion.databinding.ActivityMapsBinding;
 
-import java.util.Locale;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 public class MapsActivity extends FragmentActivity implements
-        OnMapReadyCallback, GoogleMap.OnMarkerClickListener {
+        OnMapReadyCallback, GoogleMap.OnMarkerClickListener, GoogleMap.OnCameraIdleListener {
+
+    private static final String TAG = MapsActivity.class.getSimpleName();
+
+    //Numero maximo de puntos que se conservan en el recorrido dibujado.
+    public static final int MAX_TRACK_POINTS = 500;
 
     private GoogleMap mMap;
     private ActivityMapsBinding binding;
 
+    //Un solo marcador que se mueve en cada ubicacion y una sola linea para el recorrido.
+    //Solo se usan en el hilo principal.
+    private Marker mPositionMarker;
+    //El recorrido recortado puede quedar en varios tramos; se dibuja una linea por tramo y
+    // se reutilizan entre cuadros. Es null hasta que el mapa esta listo y con permisos.
+    private List<Polyline> mTrackPolylines;
+    private int mSimplifiedZoom;
+
+    //Estado del recorrido; solo se usa en el hilo de ubicaciones.
+    private final LatLngRing mTrackPoints = new LatLngRing(MAX_TRACK_POINTS);
+    //Historial completo del recorrido en arreglos primitivos (sin objetos Location).
+    private final TrackBuffer mTrack = new TrackBuffer();
+    //Simplificador incremental; la linea dibujada solo contiene sus vertices.
+    private TrackSimplifier mSimplifier;
+    private boolean mHasTailPoint;
+    private LatLng mLastPosition;
+    //Ajusta las ubicaciones a las calles del archivo local; null mientras no se carga o si
+    // no existe el archivo. Solo se usa en el hilo de ubicaciones.
+    public static final String ROADS_FILE_NAME = "roads.csv";
+    private MapMatcher mMapMatcher;
+    //Archivo con los puntos de interes ("latitud,longitud,nombre") en el directorio de la app.
+    public static final String POIS_FILE_NAME = "pois.csv";
+    //Puntos de interes agrupados por zoom. La capa y los puntos solo se usan en el hilo
+    // principal; la capa existe desde que el mapa esta listo.
+    private PoiClusterLayer mPoiLayer;
+    private PoiClusterer mPoints;
+
+    //El recorrido se calcula en el hilo de ubicaciones y solo el estado mas reciente pasa al
+    // hilo principal para dibujarse.
+    private Handler mLocationHandler;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final SnapshotMailbox<MapSnapshot> mMapMailbox = new SnapshotMailbox<>();
+    private final Runnable mRenderSnapshot = new Runnable() {
+        @Override
+        public void run() {
+            //El dibujo se hace en el siguiente cuadro; varias peticiones se juntan en una.
+            if (mRenderController != null) {
+                mRenderController.requestFrame();
+            }
+        }
+    };
+    //Junta los cambios del mapa en un cuadro y recorta las capas al area visible.
+    private volatile MapRenderController mRenderController;
+
+    //Suscripción compartida; se deja de observar cuando la pantalla no esta visible.
+    private LocationRepository mLocationRepository;
+    private boolean mObservingLocation;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -44,9 +106,80 @@ public class MapsActivity extends FragmentActivity implements
                 .findFragmentById(R.id.map);
         mapFragment.getMapAsync(this);
 
+        mLocationRepository = LocationRepository.get(this);
+        mLocationHandler = new Handler(mLocationRepository.getLooper());
+        loadRoadNetwork();
+        loadPoints();
+
         //Se llama al método getLocalizacion.
         getLocalizacion();
     }
+    private void loadRoadNetwork() {
+        //Las calles se leen e indexan en segundo plano; el emparejamiento empieza cuando el
+        // indice esta listo, en el hilo de ubicaciones.
+        final File file = new File(getFilesDir(), ROADS_FILE_NAME);
+        if (!file.exists()) {
+            return;
+        }
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    BufferedReader reader = new BufferedReader(new FileReader(file));
+                    final RoadNetwork network;
+                    try {
+                        network = RoadNetwork.read(reader);
+                    } finally {
+                        reader.close();
+                    }
+                    Log.d(TAG, "Calles cargadas: " + network.getSegmentCount() + " segmentos");
+                    mLocationHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            mMapMatcher = new MapMatcher(network);
+                        }
+                    });
+                } catch (IOException e) {
+                    Log.d(TAG, "No se pudieron leer las calles: " + e.getMessage());
+                }
+            }
+        }, "road-loader").start();
+    }
+
+    private void loadPoints() {
+        //Lee los puntos de interes en segundo plano y los pasa a la capa de grupos cuando el
+        // mapa esta listo. Sin archivo no se muestran puntos.
+        final File file = new File(getFilesDir(), POIS_FILE_NAME);
+        if (!file.exists()) {
+            return;
+        }
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    BufferedReader reader = new BufferedReader(new FileReader(file));
+                    final PoiClusterer points;
+                    try {
+                        points = PoiClusterer.read(reader);
+                    } finally {
+                        reader.close();
+                    }
+                    mMainHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            mPoints = points;
+                            if (mPoiLayer != null) {
+                                mPoiLayer.setPoints(points);
+                            }
+                        }
+                    });
+                } catch (IOException e) {
+                    Log.d(TAG, "No se pudieron leer los puntos de interes: " + e.getMessage());
+                }
+            }
+        }, "poi-loader").start();
+    }
+
     private void getLocalizacion() {
         //Comprueba si se tiene los permisos de ubicación.
         int permiso = ContextCompat.checkSelfPermission(this, Manifest.permission.ACCESS_COARSE_LOCATION);
@@ -66,6 +199,14 @@ public class MapsActivity extends FragmentActivity implements
 
         //Se llama al metodo setOnMarkerClickListener que escucha cuando se toca un objeto Marker.
         googleMap.setOnMarkerClickListener(this);
+        //Se escucha cuando la camara se detiene para ajustar la simplificación al zoom.
+        googleMap.setOnCameraIdleListener(this);
+        //Los puntos de interes se agrupan por celdas segun el zoom y solo se dibuja un marcador
+        // por grupo; la capa se actualiza desde onCameraIdle.
+        mPoiLayer = new PoiClusterLayer(mMap);
+        if (mPoints != null) {
+            mPoiLayer.setPoints(mPoints);
+        }
 
         //Nuevamente berifica que la aplicación cuente con los permisos de localización
         if (ActivityCompat.checkSelfPermission(this, Manifest.permission.ACCESS_FINE_LOCATION) != PackageManager.PERMISSION_GRANTED && ActivityCompat.checkSelfPermission(this, Manifest.permission.ACCESS_COARSE_LOCATION) != PackageManager.PERMISSION_GRANTED) {
@@ -75,36 +216,282 @@ public class MapsActivity extends FragmentActivity implements
         //El fragmento se establece en mi ubicación.
         mMap.setMyLocationEnabled(true);
 
-        //Crea un objeto locationManager para obtener la ubicación
-        LocationManager locationManager = (LocationManager) MapsActivity.this.getSystemService(Context.LOCATION_SERVICE);
-        //Se crea un objeto de la clase LocationListener para detectar los cambios de ubicación
-        LocationListener locationListener = new LocationListener() {
-            @Override
-            public void onLocationChanged(@NonNull Location location) {
-                //Se crea un objeto de la clase LarLng que obtiene la latitud y longitud del objeto
-                // location que se pasa como parámetro al método onLocationChanged.
-                LatLng miUbicacion = new LatLng(location.getLatitude(), location.getLongitude());
-                //Al objeto mMap de la clase GoogleMap se le añade un nuevo Marker con posición
-                // en la ubicacion guardada en el objeto miUbicacion y el titulo "Ubicación actual".
-                mMap.addMarker(new MarkerOptions()
-                                    .position(miUbicacion)
-                                    .title("Ubicacion Actual"));
-                //El enfoque del mapa se cambia a la ubicación guardada en miUbicacion.
-                mMap.moveCamera((CameraUpdateFactory.newLatLng(miUbicacion)));
+        //Se crea una linea para el recorrido que se actualiza con cada ubicación.
+        mTrackPolylines = new ArrayList<>();
+        mTrackPolylines.add(addTrackPolyline());
+        mSimplifiedZoom = Math.round(mMap.getCameraPosition().zoom);
+        mSimplifier = new TrackSimplifier(TrackSimplifier.toleranceForZoom(
+                mSimplifiedZoom, mMap.getCameraPosition().target.latitude));
+
+        SupportMapFragment mapFragment = (SupportMapFragment) getSupportFragmentManager()
+                .findFragmentById(R.id.map);
+        mRenderController = new MapRenderController(mMap, mapFragment.getView(),
+                new MapRenderController.FrameRenderer() {
+                    @Override
+                    public void renderFrame(MapRenderController controller) {
+                        MapSnapshot snapshot = mMapMailbox.take();
+                        if (snapshot != null) {
+                            renderSnapshot(snapshot);
+                        }
+                    }
+                });
+        mRenderController.updateVisibleBounds();
+
+        //Se reciben las ubicaciones de la suscripción compartida.
+        startObservingLocation();
+    }
+
+    //Se crea un objeto de la clase LocationListener para detectar los cambios de ubicación
+    //Se ejecuta en el hilo de ubicaciones del repositorio.
+    private final LocationListener mLocationListener = new LocationListener() {
+        @Override
+        public void onLocationChanged(@NonNull Location location) {
+            //Si hay calles cargadas la ubicación se ajusta a la calle mas probable; lejos de
+            // las calles se usa tal cual. El marcador usa el ajuste actual y el recorrido solo
+            // los puntos que el emparejador ya confirmo, que pueden llegar con unas
+            // ubicaciones de retraso y ya corregidos.
+            double latitude = location.getLatitude();
+            double longitude = location.getLongitude();
+            if (mMapMatcher == null) {
+                appendTrackPoint(latitude, longitude, location.getTime(), location.getAccuracy(),
+                        location.getSpeed());
+            } else {
+                boolean matched = mMapMatcher.match(latitude, longitude,
+                        location.getTime(), location.getAccuracy());
+                TrackBuffer committed = mMapMatcher.getCommitted();
+                for (int i = 0; i < committed.size(); i++) {
+                    appendTrackPoint(committed.getLatitude(i), committed.getLongitude(i),
+                            committed.getTime(i), committed.getAccuracy(i), 0f);
+                }
+                if (matched) {
+                    latitude = mMapMatcher.getMatchedLatitude();
+                    longitude = mMapMatcher.getMatchedLongitude();
+                } else {
+                    appendTrackPoint(latitude, longitude, location.getTime(),
+                            location.getAccuracy(), location.getSpeed());
+                }
             }
-        };
-        locationManager.requestLocationUpdates(LocationManager.NETWORK_PROVIDER, 0, 0, locationListener);
+            //Se crea un objeto de la clase LarLng que obtiene la latitud y longitud del objeto
+            // location que se pasa como parámetro al método onLocationChanged.
+            mLastPosition = new LatLng(latitude, longitude);
+            publishSnapshot();
+        }
+    };
+
+    private void appendTrackPoint(double latitude, double longitude, long time, float accuracy,
+                                  float speed) {
+        //Se guarda el punto en el historial sin conservar el objeto Location y se agrega al
+        // recorrido simplificado; el anillo descarta los puntos mas antiguos para que la
+        // memoria del mapa no crezca.
+        mTrack.append(latitude, longitude, time, accuracy, speed);
+        appendToTrack(latitude, longitude);
+    }
+
+    private void publishSnapshot() {
+        //Copia el recorrido ya calculado y lo deja en el buzon. Si el hilo principal aun no
+        // dibujaba el anterior, este lo reemplaza y no se acumulan redibujados.
+        //Solo se copian los puntos que caen en el area visible con margen.
+        MapSnapshot snapshot = new MapSnapshot(mLastPosition, mRenderController.clip(mTrackPoints));
+        if (mMapMailbox.post(snapshot)) {
+            mMainHandler.post(mRenderSnapshot);
+        } else {
+            PipelineMetrics.get().countFixCoalesced();
+        }
+    }
+
+    private void renderSnapshot(MapSnapshot snapshot) {
+        //Unico trabajo en el hilo principal: actualizar el marcador, la linea y la camara.
+        long start = System.nanoTime();
+        setTrackPieces(snapshot.trackPieces);
+        if (snapshot.position != null) {
+            //Se mueve el marcador de la ubicación actual en lugar de crear uno nuevo.
+            updatePositionMarker(snapshot.position);
+            //La camara solo sigue a la ubicación si salio de la zona central del mapa.
+            mRenderController.follow(snapshot.position);
+        }
+        PipelineMetrics.get().recordLatency(PipelineMetrics.MAP_REDRAW, System.nanoTime() - start);
+    }
+
+    private Polyline addTrackPolyline() {
+        return mMap.addPolyline(new PolylineOptions()
+                .color(Color.BLUE)
+                .width(8f));
+    }
+
+    private void setTrackPieces(List<List<LatLng>> pieces) {
+        //Usa una linea por tramo; las lineas que sobran se quitan salvo la primera, que queda
+        // vacia si no hay tramos visibles.
+        for (int i = 0; i < pieces.size(); i++) {
+            if (i == mTrackPolylines.size()) {
+                mTrackPolylines.add(addTrackPolyline());
+            }
+            mTrackPolylines.get(i).setPoints(pieces.get(i));
+        }
+        if (pieces.isEmpty()) {
+            mTrackPolylines.get(0).setPoints(Collections.<LatLng>emptyList());
+        }
+        for (int i = mTrackPolylines.size() - 1; i >= Math.max(1, pieces.size()); i--) {
+            mTrackPolylines.remove(i).remove();
+        }
+    }
+
+    private void startObservingLocation() {
+        //Se suscribe al repositorio solo si el mapa ya tiene la linea del recorrido (mapa listo
+        // y con permisos) y no se estaba observando ya.
+        if (mTrackPolylines != null && !mObservingLocation) {
+            mLocationRepository.addObserver(mLocationListener);
+            mObservingLocation = true;
+        }
+    }
+
+    private void stopObservingLocation() {
+        //Al dejar de observar, el repositorio detiene el proveedor si no quedan observadores.
+        if (mObservingLocation) {
+            mLocationRepository.removeObserver(mLocationListener);
+            mObservingLocation = false;
+        }
+    }
+
+    @Override
+    protected void onStart() {
+        super.onStart();
+        startObservingLocation();
+    }
+
+    @Override
+    protected void onStop() {
+        stopObservingLocation();
+        super.onStop();
+    }
+
+    private void appendToTrack(double latitude, double longitude) {
+        //Agrega el punto al simplificador y pasa a la linea solo los vertices nuevos. El
+        // ultimo punto de la linea es el punto pendiente, que se reemplaza en cada ubicación.
+        int firstNewVertex = mSimplifier.getVertexCount();
+        mSimplifier.add(latitude, longitude);
+        if (mHasTailPoint) {
+            mTrackPoints.removeLast();
+        }
+        TrackBuffer vertices = mSimplifier.getVertices();
+        for (int i = firstNewVertex; i < vertices.size(); i++) {
+            mTrackPoints.add(new LatLng(vertices.getLatitude(i), vertices.getLongitude(i)));
+        }
+        mHasTailPoint = mSimplifier.hasTail();
+        if (mHasTailPoint) {
+            mTrackPoints.add(new LatLng(mSimplifier.getTailLatitude(), mSimplifier.getTailLongitude()));
+        }
+    }
+
+    private void rebuildTrack() {
+        //Vuelve a simplificar todo el historial con la tolerancia actual. Solo se hace cuando
+        // cambia el nivel de zoom, no en cada ubicación.
+        mSimplifier.reset();
+        mTrackPoints.clear();
+        mHasTailPoint = false;
+        for (int i = 0; i < mTrack.size(); i++) {
+            appendToTrack(mTrack.getLatitude(i), mTrack.getLongitude(i));
+        }
+        publishSnapshot();
+    }
+
+    @Override
+    public void onCameraIdle() {
+        //Los grupos de puntos de interes se recalculan con la nueva camara.
+        if (mPoiLayer != null) {
+            mPoiLayer.onCameraIdle();
+        }
+        //Si cambio el nivel de zoom se recalcula la tolerancia en metros y se redibuja la linea.
+        //La simplificacion se hace en el hilo de ubicaciones, donde vive el recorrido.
+        if (mTrackPolylines == null) {
+            return;
+        }
+        //Si cambio el area visible la linea se recorta de nuevo en el hilo de ubicaciones.
+        boolean boundsChanged = mRenderController.updateVisibleBounds();
+        CameraPosition position = mMap.getCameraPosition();
+        int zoom = Math.round(position.zoom);
+        if (zoom != mSimplifiedZoom) {
+            mSimplifiedZoom = zoom;
+            final double tolerance = TrackSimplifier.toleranceForZoom(zoom, position.target.latitude);
+            mLocationHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    mSimplifier.setTolerance(tolerance);
+                    rebuildTrack();
+                }
+            });
+        } else if (boundsChanged) {
+            mLocationHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    publishSnapshot();
+                }
+            });
+        }
+    }
+
+    private void updatePositionMarker(LatLng position) {
+        //Crea el marcador la primera vez; despues solo cambia su posición.
+        if (mPositionMarker == null) {
+            mPositionMarker = mMap.addMarker(new MarkerOptions()
+                    .position(position)
+                    .title("Ubicacion Actual"));
+        } else {
+            mPositionMarker.setPosition(position);
+        }
     }
 
     @Override
     public boolean onMarkerClick(@NonNull Marker marker) {
         //Este metodo detecta y es llamado cuando se da click o se toca un Marker.
-        //Se crea una cadena de texto con las coordenadas de la ubicacion actual
-        String formatLatLng = String.format(Locale.getDefault(),
-                "Ubicacion Actual\nLatitud = %f\nLongitud= %f", marker.getPosition().latitude, marker.getPosition().longitude);
+        //Los marcadores de puntos de interes muestran su titulo con el comportamiento normal
+        // del mapa.
+        if (marker != mPositionMarker) {
+            return false;
+        }
+        //Se crea una cadena de texto con las coordenadas de la ubicacion actual, con 6
+        // decimales como %f pero sin String.format.
+        StringBuilder formatLatLng = new StringBuilder("Ubicacion Actual\nLatitud = ");
+        CoordinateFormat.append(formatLatLng, marker.getPosition().latitude,
+                CoordinateFormat.DISPLAY_DECIMALS).append("\nLongitud= ");
+        CoordinateFormat.append(formatLatLng, marker.getPosition().longitude,
+                CoordinateFormat.DISPLAY_DECIMALS);
+        //Si la direccion de esa zona ya se resolvio se muestra desde la cache por teselas,
+        // sin volver a consultar al Geocoder.
+        TileCache<String> addresses = AddressCache.get(this);
+        String address = addresses.getCached(addresses.tileKey(marker.getPosition().latitude,
+                marker.getPosition().longitude));
+        if (address != null) {
+            formatLatLng.append("\n").append(address);
+        }
 
         //Se muestran las coordenadas
         Toast.makeText(this, formatLatLng, Toast.LENGTH_LONG).show();
         return true;
     }
+
+    @Override
+    protected void onDestroy() {
+        //Descarta el trabajo pendiente de esta pantalla en ambos hilos.
+        mLocationHandler.removeCallbacksAndMessages(null);
+        mMainHandler.removeCallbacks(mRenderSnapshot);
+        if (mRenderController != null) {
+            mRenderController.cancel();
+        }
+        if (mPoiLayer != null) {
+            mPoiLayer.release();
+            mPoiLayer = null;
+        }
+        super.onDestroy();
+    }
+
+    private static final class MapSnapshot {
+        //Estado del mapa listo para dibujarse en el hilo principal.
+        final LatLng position;
+        final List<List<LatLng>> trackPieces;
+
+        MapSnapshot(LatLng position, List<List<LatLng>> trackPieces) {
+            this.position = position;
+            this.trackPieces = trackPieces;
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,135 @@
+package com.dmovil.appgeolocalizacion;
+
+import com.google.android.gms.location.LocationRequest;
+
+public class MotionScheduler {
+
+    public enum MotionState {
+        STATIONARY,
+        WALKING,
+        DRIVING
+    }
+
+    //Umbrales de velocidad en m/s. Para subir de estado se usa un umbral mas alto que para
+    // bajar (histeresis), asi una velocidad cercana al limite no cambia el estado cada vez.
+    public static final float WALKING_ENTER_SPEED = 0.8f;
+    public static final float WALKING_EXIT_SPEED = 0.3f;
+    public static final float DRIVING_ENTER_SPEED = 4.0f;
+    public static final float DRIVING_EXIT_SPEED = 2.5f;
+
+    //Numero de ubicaciones seguidas que deben indicar el mismo estado antes de cambiarlo.
+    public static final int CONFIRMATIONS = 3;
+
+    //Peso de la velocidad nueva en el promedio exponencial.
+    private static final float SPEED_SMOOTHING = 0.3f;
+
+    private MotionState mState;
+    private MotionState mCandidate;
+    private int mCandidateCount;
+
+    private float mSmoothedSpeed = -1f;
+    private boolean mHasPrevious;
+    private double mPreviousLat;
+    private double mPreviousLon;
+    private long mPreviousTime;
+
+    public MotionScheduler(MotionState initialState) {
+        mState = initialState;
+    }
+
+    public boolean onLocation(double latitude, double longitude, long time,
+                              boolean hasSpeed, float speed) {
+        //Estima la velocidad (la del proveedor o la calculada con la ubicación anterior),
+        // clasifica el movimiento y devuelve true si el estado cambio.
+        float current = -1f;
+        if (hasSpeed) {
+            current = speed;
+        } else if (mHasPrevious && time > mPreviousTime) {
+            double meters = GeoMath.equirectangularDistance(
+                    mPreviousLat, mPreviousLon, latitude, longitude);
+            current = (float) (meters * 1000.0 / (time - mPreviousTime));
+        }
+        mHasPrevious = true;
+        mPreviousLat = latitude;
+        mPreviousLon = longitude;
+        mPreviousTime = time;
+        if (current < 0) {
+            return false;
+        }
+
+        mSmoothedSpeed = mSmoothedSpeed < 0
+                ? current
+                : mSmoothedSpeed + SPEED_SMOOTHING * (current - mSmoothedSpeed);
+
+        MotionState observed = classify(mSmoothedSpeed);
+        if (observed == mState) {
+            mCandidate = null;
+            mCandidateCount = 0;
+            return false;
+        }
+        if (observed != mCandidate) {
+            mCandidate = observed;
+            mCandidateCount = 0;
+        }
+        mCandidateCount++;
+        if (mCandidateCount < CONFIRMATIONS) {
+            return false;
+        }
+        mState = observed;
+        mCandidate = null;
+        mCandidateCount = 0;
+        return true;
+    }
+
+    private MotionState classify(float speed) {
+        //Los umbrales dependen del estado actual para aplicar la histeresis.
+        switch (mState) {
+            case STATIONARY:
+                if (speed >= DRIVING_ENTER_SPEED) {
+                    return MotionState.DRIVING;
+                }
+                return speed >= WALKING_ENTER_SPEED ? MotionState.WALKING : MotionState.STATIONARY;
+            case WALKING:
+                if (speed >= DRIVING_ENTER_SPEED) {
+                    return MotionState.DRIVING;
+                }
+                return speed < WALKING_EXIT_SPEED ? MotionState.STATIONARY : MotionState.WALKING;
+            case DRIVING:
+            default:
+                if (speed >= DRIVING_EXIT_SPEED) {
+                    return MotionState.DRIVING;
+                }
+                return speed < WALKING_EXIT_SPEED ? MotionState.STATIONARY : MotionState.WALKING;
+        }
+    }
+
+    public LocationRequest createLocationRequest() {
+        //Crea la configuracion de peticiones adecuada para el estado actual: sin movimiento se
+        // piden pocas ubicaciones y de menor precision; en auto, una por segundo.
+        switch (mState) {
+            case STATIONARY:
+                return new LocationRequest()
+                        .setInterval(30000)
+                        .setFastestInterval(15000)
+                        .setSmallestDisplacement(10f)
+                        .setPriority(LocationRequest.PRIORITY_BALANCED_POWER_ACCURACY);
+            case WALKING:
+                return new LocationRequest()
+                        .setInterval(5000)
+                        .setFastestInterval(2500)
+                        .setSmallestDisplacement(3f)
+                        .setPriority(LocationRequest.PRIORITY_HIGH_ACCURACY);
+            case DRIVING:
+            default:
+                return new LocationRequest()
+                        .setInterval(MainActivity.UPDATE_INTERVAL)
+                        .setFastestInterval(MainActivity.UPDATE_FASTEST_INTERVAL)
+                        .setSmallestDisplacement(5f)
+                        .setPriority(LocationRequest.PRIORITY_HIGH_ACCURACY);
+        }
+    }
+
+    public MotionState getState() {
+        return mState;
+    }
+}
@@ -0,0 +1,255 @@
+package com.dmovil.appgeolocalizacion;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+public class OfflineReverseGeocoder implements ReverseGeocoder {
+
+    //Nombre del indice dentro del directorio de archivos de la aplicación.
+    public static final String DEFAULT_FILE_NAME = "gazetteer.idx";
+    //Celdas por grado de la cuadricula del indice (0.01 grados, aprox. 1.1 km).
+    public static final int DEFAULT_CELLS_PER_DEGREE = 100;
+
+    //Formato del archivo: encabezado, entradas de tamaño fijo ordenadas por celda y al final
+    // los nombres en UTF-8 precedidos por su largo.
+    private static final int MAGIC = 0x47415A31; // "GAZ1"
+    private static final int HEADER_BYTES = 12;
+    private static final int ENTRY_BYTES = 20;
+    private static final double FIXED_POINT = 1e7;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final ByteBuffer mBuffer;
+    private final int mCount;
+    private final int mCellsPerDegree;
+    private final double mMaxDistance;
+
+    private OfflineReverseGeocoder(ByteBuffer buffer) throws IOException {
+        mBuffer = buffer;
+        if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+            throw new IOException("El archivo no es un indice de direcciones valido");
+        }
+        mCount = buffer.getInt(4);
+        mCellsPerDegree = buffer.getInt(8);
+        if (mCount < 0 || mCellsPerDegree <= 0
+                || HEADER_BYTES + (long) mCount * ENTRY_BYTES > buffer.capacity()) {
+            throw new IOException("El indice de direcciones esta dañado");
+        }
+        //Solo se aceptan direcciones dentro de una celda de distancia.
+        mMaxDistance = GeoMath.METERS_PER_DEGREE / mCellsPerDegree;
+    }
+
+    public static OfflineReverseGeocoder open(File file) throws IOException {
+        //Mapea el indice en memoria: no se lee completo, el sistema carga solo las paginas que
+        // se consultan.
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new OfflineReverseGeocoder(buffer);
+        } finally {
+            //El mapeo sigue siendo valido despues de cerrar el archivo.
+            raf.close();
+        }
+    }
+
+    public static ReverseGeocoder openLazily(final File file) {
+        //Devuelve un geocodificador que abre el indice en la primera consulta, es decir en el
+        // hilo que resuelve direcciones y no en el que lo crea. Si el archivo no existe o no se
+        // puede abrir, las consultas devuelven null y se usa el siguiente geocodificador.
+        return new ReverseGeocoder() {
+            private OfflineReverseGeocoder mIndex;
+            private boolean mFailed;
+
+            @Override
+            public synchronized String getAddress(double latitude, double longitude)
+                    throws IOException {
+                if (mIndex == null) {
+                    if (mFailed || !file.exists()) {
+                        return null;
+                    }
+                    try {
+                        mIndex = open(file);
+                    } catch (IOException e) {
+                        //Solo se intenta una vez; el error se informa en la primera consulta.
+                        mFailed = true;
+                        throw e;
+                    }
+                }
+                return mIndex.getAddress(latitude, longitude);
+            }
+        };
+    }
+
+    @Override
+    public String getAddress(double latitude, double longitude) {
+        //Busca la entrada mas cercana dentro de mMaxDistance. Una fila de celdas mide siempre
+        // mMaxDistance, pero el ancho de una columna se reduce con el coseno de la latitud, asi
+        // que lejos del ecuador hay que revisar mas columnas a cada lado.
+        long row = cellRow(latitude, mCellsPerDegree);
+        long column = cellColumn(longitude, mCellsPerDegree);
+        long columns = 360L * mCellsPerDegree;
+        long span = columnSpan(latitude);
+        int best = -1;
+        double bestDistance = mMaxDistance;
+        for (long r = row - 1; r <= row + 1; r++) {
+            for (long c = column - span; c <= column + span; c++) {
+                //La longitud da la vuelta en el antimeridiano.
+                long wrapped = (c + columns) % columns;
+                long key = r * columns + wrapped;
+                for (int i = lowerBound(key); i < mCount && keyAt(i) == key; i++) {
+                    double distance = GeoMath.equirectangularDistance(latitude, longitude,
+                            latitudeAt(i), longitudeAt(i));
+                    if (distance <= bestDistance) {
+                        bestDistance = distance;
+                        best = i;
+                    }
+                }
+            }
+        }
+        return best < 0 ? null : nameAt(best);
+    }
+
+    private long columnSpan(double latitude) {
+        //Columnas necesarias para cubrir mMaxDistance en la fila mas cercana al polo de las tres
+        // que se revisan. Cerca de los polos se limita a la vuelta completa.
+        double poleward = Math.min(90.0, Math.abs(latitude) + 1.0 / mCellsPerDegree);
+        double cos = Math.cos(Math.toRadians(poleward));
+        long half = 180L * mCellsPerDegree;
+        if (cos * half <= 1.0) {
+            return half;
+        }
+        return Math.min(half, (long) Math.ceil(1.0 / cos));
+    }
+
+    public int size() {
+        return mCount;
+    }
+
+    private int lowerBound(long key) {
+        //Busqueda binaria de la primera entrada con clave mayor o igual.
+        int low = 0;
+        int high = mCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (keyAt(mid) < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private long keyAt(int index) {
+        return mBuffer.getLong(HEADER_BYTES + index * ENTRY_BYTES);
+    }
+
+    private double latitudeAt(int index) {
+        return mBuffer.getInt(HEADER_BYTES + index * ENTRY_BYTES + 8) / FIXED_POINT;
+    }
+
+    private double longitudeAt(int index) {
+        return mBuffer.getInt(HEADER_BYTES + index * ENTRY_BYTES + 12) / FIXED_POINT;
+    }
+
+    private String nameAt(int index) {
+        int offset = mBuffer.getInt(HEADER_BYTES + index * ENTRY_BYTES + 16);
+        int length = mBuffer.getShort(offset) & 0xFFFF;
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = mBuffer.get(offset + 2 + i);
+        }
+        return new String(bytes, UTF_8);
+    }
+
+    private static long cellRow(double latitude, int cellsPerDegree) {
+        return (long) Math.floor((latitude + 90.0) * cellsPerDegree);
+    }
+
+    private static long cellColumn(double longitude, int cellsPerDegree) {
+        long columns = 360L * cellsPerDegree;
+        long column = (long) Math.floor((longitude + 180.0) * cellsPerDegree);
+        return ((column % columns) + columns) % columns;
+    }
+
+    public static int writeIndex(BufferedReader csv, File output, int cellsPerDegree)
+            throws IOException {
+        //Convierte un archivo de texto con lineas "latitud,longitud,direccion" en el indice
+        // binario. Se usa al preparar el archivo, no en cada consulta. Devuelve el numero de
+        // direcciones escritas.
+        final long columns = 360L * cellsPerDegree;
+        List<long[]> entries = new ArrayList<>();
+        List<byte[]> names = new ArrayList<>();
+        String line;
+        while ((line = csv.readLine()) != null) {
+            String[] parts = line.split(",", 3);
+            if (parts.length < 3) {
+                continue;
+            }
+            double latitude;
+            double longitude;
+            try {
+                latitude = Double.parseDouble(parts[0].trim());
+                longitude = Double.parseDouble(parts[1].trim());
+            } catch (NumberFormatException e) {
+                //Encabezados o lineas invalidas se ignoran.
+                continue;
+            }
+            byte[] name = parts[2].trim().getBytes(UTF_8);
+            if (name.length > 0xFFFF) {
+                continue;
+            }
+            long key = cellRow(latitude, cellsPerDegree) * columns
+                    + cellColumn(longitude, cellsPerDegree);
+            entries.add(new long[]{key, Math.round(latitude * FIXED_POINT),
+                    Math.round(longitude * FIXED_POINT), names.size()});
+            names.add(name);
+        }
+        Collections.sort(entries, new Comparator<long[]>() {
+            @Override
+            public int compare(long[] a, long[] b) {
+                return Long.compare(a[0], b[0]);
+            }
+        });
+
+        DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(output)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(entries.size());
+            out.writeInt(cellsPerDegree);
+            long offset = HEADER_BYTES + (long) entries.size() * ENTRY_BYTES;
+            for (long[] entry : entries) {
+                out.writeLong(entry[0]);
+                out.writeInt((int) entry[1]);
+                out.writeInt((int) entry[2]);
+                out.writeInt((int) offset);
+                offset += 2 + names.get((int) entry[3]).length;
+            }
+            if (offset > Integer.MAX_VALUE) {
+                throw new IOException("El indice de direcciones es demasiado grande");
+            }
+            for (long[] entry : entries) {
+                byte[] name = names.get((int) entry[3]);
+                out.writeShort(name.length);
+                out.write(name);
+            }
+        } finally {
+            out.close();
+        }
+        return entries.size();
+    }
+}
@@ -0,0 +1,121 @@
+package com.dmovil.appgeolocalizacion;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.atomic.AtomicLong;
+
+public final class PipelineMetrics {
+
+    //Etapas cuya latencia se mide.
+    public static final int FIX_AGE = 0;
+    public static final int GEOCODE = 1;
+    public static final int UI_UPDATE = 2;
+    public static final int MAP_REDRAW = 3;
+    private static final String[] STAGE_NAMES = {
+            "edad de la ubicación", "busqueda de direccion", "actualizacion de UI", "redibujado del mapa"
+    };
+
+    private static final PipelineMetrics sInstance = new PipelineMetrics();
+
+    private final LatencyHistogram[] mHistograms = new LatencyHistogram[STAGE_NAMES.length];
+    //Ubicaciones recibidas del proveedor, descartadas por los filtros y reemplazadas en un
+    // buzon antes de mostrarse.
+    private final AtomicLong mFixesReceived = new AtomicLong();
+    private final AtomicLong mFixesDropped = new AtomicLong();
+    private final AtomicLong mFixesCoalesced = new AtomicLong();
+    private final AtomicLong mGeocodeCacheHits = new AtomicLong();
+    private volatile long mStartMillis = System.currentTimeMillis();
+
+    private PipelineMetrics() {
+        for (int i = 0; i < mHistograms.length; i++) {
+            mHistograms[i] = new LatencyHistogram();
+        }
+    }
+
+    public static PipelineMetrics get() {
+        return sInstance;
+    }
+
+    public void recordLatency(int stage, long nanos) {
+        mHistograms[stage].record(nanos);
+    }
+
+    public LatencyHistogram getHistogram(int stage) {
+        return mHistograms[stage];
+    }
+
+    public void countFixReceived() {
+        mFixesReceived.incrementAndGet();
+    }
+
+    public void countFixDropped() {
+        mFixesDropped.incrementAndGet();
+    }
+
+    public void countFixCoalesced() {
+        mFixesCoalesced.incrementAndGet();
+    }
+
+    public void countGeocodeCacheHit() {
+        mGeocodeCacheHits.incrementAndGet();
+    }
+
+    public String summary() {
+        //Texto corto para la capa de depuracion.
+        StringBuilder builder = new StringBuilder(256);
+        builder.append("ubicaciones: ").append(mFixesReceived.get())
+                .append(" descartadas: ").append(mFixesDropped.get())
+                .append(" combinadas: ").append(mFixesCoalesced.get())
+                .append(" cache: ").append(mGeocodeCacheHits.get());
+        for (int i = 0; i < mHistograms.length; i++) {
+            LatencyHistogram histogram = mHistograms[i];
+            builder.append('\n').append(STAGE_NAMES[i])
+                    .append(": p50 ").append(formatMicros(histogram.getPercentileMicros(0.5)))
+                    .append(" p99 ").append(formatMicros(histogram.getPercentileMicros(0.99)))
+                    .append(" max ").append(formatMicros(histogram.getMaxMicros()));
+        }
+        return builder.toString();
+    }
+
+    public void dump(Writer writer) throws IOException {
+        //Escribe todos los contadores y las cubetas de cada histograma.
+        writer.write("inicio_ms=" + mStartMillis + "\n");
+        writer.write("volcado_ms=" + System.currentTimeMillis() + "\n");
+        writer.write("ubicaciones_recibidas=" + mFixesReceived.get() + "\n");
+        writer.write("ubicaciones_descartadas=" + mFixesDropped.get() + "\n");
+        writer.write("ubicaciones_combinadas=" + mFixesCoalesced.get() + "\n");
+        writer.write("aciertos_cache_direcciones=" + mGeocodeCacheHits.get() + "\n");
+        for (int i = 0; i < mHistograms.length; i++) {
+            LatencyHistogram histogram = mHistograms[i];
+            writer.write("\n[" + STAGE_NAMES[i] + "]\n");
+            writer.write("n=" + histogram.getCount()
+                    + " media_us=" + histogram.getMeanMicros()
+                    + " p50_us=" + histogram.getPercentileMicros(0.5)
+                    + " p90_us=" + histogram.getPercentileMicros(0.9)
+                    + " p99_us=" + histogram.getPercentileMicros(0.99)
+                    + " max_us=" + histogram.getMaxMicros() + "\n");
+            for (int b = 0; b < LatencyHistogram.BUCKETS; b++) {
+                long count = histogram.getBucket(b);
+                if (count > 0) {
+                    writer.write("<" + (b == 0 ? 1 : 1L << b) + "us " + count + "\n");
+                }
+            }
+        }
+        writer.flush();
+    }
+
+    public void reset() {
+        for (LatencyHistogram histogram : mHistograms) {
+            histogram.reset();
+        }
+        mFixesReceived.set(0);
+        mFixesDropped.set(0);
+        mFixesCoalesced.set(0);
+        mGeocodeCacheHits.set(0);
+        mStartMillis = System.currentTimeMillis();
+    }
+
+    private static String formatMicros(long micros) {
+        return micros >= 10000 ? (micros / 1000) + "ms" : micros + "us";
+    }
+}
@@ -0,0 +1,31 @@
+package com.dmovil.appgeolocalizacion;
+
+import android.content.Context;
+import android.location.Address;
+import android.location.Geocoder;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+
+public class PlatformReverseGeocoder implements ReverseGeocoder {
+
+    private final Geocoder mGeocoder;
+
+    public PlatformReverseGeocoder(Context context) {
+        //Usa el Geocoder de Android, que necesita red y un servicio de la plataforma.
+        mGeocoder = new Geocoder(context.getApplicationContext(), Locale.getDefault());
+    }
+
+    @Override
+    public String getAddress(double latitude, double longitude) throws IOException {
+        if (!Geocoder.isPresent()) {
+            return null;
+        }
+        List<Address> list = mGeocoder.getFromLocation(latitude, longitude, 1);
+        if (list != null && !list.isEmpty()) {
+            return list.get(0).getAddressLine(0);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,160 @@
+package com.dmovil.appgeolocalizacion;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import com.google.android.gms.maps.GoogleMap;
+import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.maps.model.LatLngBounds;
+import com.google.android.gms.maps.model.Marker;
+import com.google.android.gms.maps.model.MarkerOptions;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class PoiClusterLayer implements GoogleMap.OnCameraIdleListener {
+
+    //Margen alrededor del area visible (fraccion del ancho/alto) que tambien se agrupa, para
+    // que un desplazamiento pequeño no deje huecos.
+    public static final double VISIBLE_MARGIN = 0.25;
+
+    private final GoogleMap mMap;
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    //Solo se aplica el resultado del ultimo movimiento de camara.
+    private final AtomicInteger mGeneration = new AtomicInteger();
+
+    //Marcadores en el mapa por clave de celda; solo se usa en el hilo principal.
+    private final Map<Long, Marker> mMarkers = new HashMap<>();
+    private final Map<Long, Integer> mMarkerCounts = new HashMap<>();
+    private volatile PoiClusterer mClusterer;
+    private float mClusteredZoom = Float.NaN;
+
+    public PoiClusterLayer(GoogleMap map) {
+        mMap = map;
+    }
+
+    public void setPoints(PoiClusterer clusterer) {
+        //Cambia los puntos y vuelve a agrupar con la camara actual. Hilo principal. La
+        // cuadricula de cada zoom se construye una vez, en el hilo de agrupamiento, con la
+        // primera consulta; las siguientes solo leen las celdas visibles.
+        mClusterer = clusterer;
+        removeAllMarkers();
+        onCameraIdle();
+    }
+
+    @Override
+    public void onCameraIdle() {
+        //Lee la camara en el hilo principal y agrupa en segundo plano.
+        final PoiClusterer clusterer = mClusterer;
+        if (clusterer == null) {
+            return;
+        }
+        final float zoom = (float) Math.floor(mMap.getCameraPosition().zoom);
+        LatLngBounds bounds = mMap.getProjection().getVisibleRegion().latLngBounds;
+        double latMargin = (bounds.northeast.latitude - bounds.southwest.latitude) * VISIBLE_MARGIN;
+        double lonSpan = bounds.northeast.longitude - bounds.southwest.longitude;
+        if (lonSpan < 0) {
+            lonSpan += 360;
+        }
+        double lonMargin = lonSpan * VISIBLE_MARGIN;
+        final double south = Math.max(-90, bounds.southwest.latitude - latMargin);
+        final double north = Math.min(90, bounds.northeast.latitude + latMargin);
+        final double west = wrap(bounds.southwest.longitude - lonMargin);
+        final double east = wrap(bounds.northeast.longitude + lonMargin);
+        final boolean allLongitudes = lonSpan + 2 * lonMargin >= 360;
+
+        final int generation = mGeneration.incrementAndGet();
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (generation != mGeneration.get()) {
+                    return;
+                }
+                final List<PoiClusterer.Cluster> clusters = allLongitudes
+                        ? clusterer.cluster(zoom, south, -180, north, 180)
+                        : clusterer.cluster(zoom, south, west, north, east);
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation == mGeneration.get() && clusterer == mClusterer) {
+                            applyClusters(zoom, clusters);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    private void applyClusters(float zoom, List<PoiClusterer.Cluster> clusters) {
+        //Compara los grupos nuevos con los marcadores que ya estan en el mapa: solo se agregan,
+        // quitan o modifican los que cambiaron.
+        if (zoom != mClusteredZoom) {
+            //Con otro zoom la cuadricula es distinta y las claves ya no corresponden.
+            removeAllMarkers();
+            mClusteredZoom = zoom;
+        }
+        Set<Long> visible = new HashSet<>();
+        for (PoiClusterer.Cluster cluster : clusters) {
+            visible.add(cluster.key);
+            LatLng position = new LatLng(cluster.latitude, cluster.longitude);
+            Marker marker = mMarkers.get(cluster.key);
+            if (marker == null) {
+                marker = mMap.addMarker(new MarkerOptions()
+                        .position(position)
+                        .title(title(cluster)));
+                mMarkers.put(cluster.key, marker);
+                mMarkerCounts.put(cluster.key, cluster.count);
+            } else if (mMarkerCounts.get(cluster.key) != cluster.count) {
+                marker.setPosition(position);
+                marker.setTitle(title(cluster));
+                mMarkerCounts.put(cluster.key, cluster.count);
+            }
+        }
+        Iterator<Map.Entry<Long, Marker>> iterator = mMarkers.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Long, Marker> entry = iterator.next();
+            if (!visible.contains(entry.getKey())) {
+                entry.getValue().remove();
+                mMarkerCounts.remove(entry.getKey());
+                iterator.remove();
+            }
+        }
+    }
+
+    private static String title(PoiClusterer.Cluster cluster) {
+        return cluster.count == 1 ? cluster.name : cluster.count + " lugares";
+    }
+
+    private static double wrap(double longitude) {
+        if (longitude < -180) {
+            return longitude + 360;
+        }
+        if (longitude > 180) {
+            return longitude - 360;
+        }
+        return longitude;
+    }
+
+    private void removeAllMarkers() {
+        for (Marker marker : mMarkers.values()) {
+            marker.remove();
+        }
+        mMarkers.clear();
+        mMarkerCounts.clear();
+    }
+
+    public void release() {
+        //Detiene el hilo de agrupamiento y descarta los resultados pendientes.
+        mGeneration.incrementAndGet();
+        mExecutor.shutdownNow();
+        mMainHandler.removeCallbacksAndMessages(null);
+    }
+}
@@ -0,0 +1,199 @@
+package com.dmovil.appgeolocalizacion;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class PoiClusterer {
+
+    //Tamaño en pixeles de cada celda de agrupamiento en pantalla.
+    public static final int CELL_PIXELS = 96;
+    //Zoom mas alto con cuadricula propia; los zoom mayores usan esta.
+    public static final int MAX_ZOOM = 21;
+
+    //Puntos de interes en arreglos paralelos; no se modifican despues de crearse, asi se
+    // pueden leer desde el hilo de agrupamiento.
+    private final double[] mLatitudes;
+    private final double[] mLongitudes;
+    private final String[] mNames;
+    //Cuadriculas ya construidas por zoom entero; se crean al usarse por primera vez.
+    private final Level[] mLevels = new Level[MAX_ZOOM + 1];
+
+    public static final class Cluster {
+        //Grupo de puntos de una celda: su clave, cuantos son y su centro.
+        public final long key;
+        public final int count;
+        public final double latitude;
+        public final double longitude;
+        //Nombre del punto cuando el grupo tiene uno solo.
+        public final String name;
+
+        Cluster(long key, int count, double latitude, double longitude, String name) {
+            this.key = key;
+            this.count = count;
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.name = name;
+        }
+    }
+
+    public PoiClusterer(double[] latitudes, double[] longitudes, String[] names) {
+        if (latitudes.length != longitudes.length || latitudes.length != names.length) {
+            throw new IllegalArgumentException("Los arreglos deben tener el mismo tamaño");
+        }
+        mLatitudes = latitudes;
+        mLongitudes = longitudes;
+        mNames = names;
+    }
+
+    public int size() {
+        return mLatitudes.length;
+    }
+
+    public static double cellDegrees(float zoom) {
+        //Grados que ocupa una celda de CELL_PIXELS en el zoom dado (teselas de 256 px).
+        return CELL_PIXELS * 360.0 / (256.0 * Math.pow(2, Math.floor(zoom)));
+    }
+
+    public List<Cluster> cluster(float zoom, double south, double west, double north, double east) {
+        //Devuelve los grupos de las celdas que tocan el area dada. Cada grupo cuenta todos los
+        // puntos de su celda, aunque algunos queden fuera del area, asi un grupo del borde no
+        // cambia al mover la camara. La cuadricula esta alineada al origen: con el mismo zoom
+        // una celda conserva su clave y los marcadores existentes se pueden reutilizar.
+        Level level = level(zoom);
+        List<Cluster> clusters = new ArrayList<>();
+        if (level.keys.length == 0 || south > north) {
+            return clusters;
+        }
+        long firstRow = level.row(south);
+        long lastRow = level.row(north);
+        long westColumn = level.column(west);
+        long eastColumn = level.column(east);
+        for (long row = firstRow; row <= lastRow; row++) {
+            if (west <= east) {
+                level.collect(row, westColumn, eastColumn, clusters);
+            } else {
+                //El area cruza el antimeridiano: dos rangos de columnas.
+                level.collect(row, westColumn, level.columns - 1, clusters);
+                level.collect(row, 0, eastColumn, clusters);
+            }
+        }
+        return clusters;
+    }
+
+    private synchronized Level level(float zoom) {
+        //La cuadricula de cada zoom se construye la primera vez que se usa, en el hilo de
+        // agrupamiento, y despues solo se consulta.
+        int index = (int) Math.max(0, Math.min(MAX_ZOOM, Math.floor(zoom)));
+        Level level = mLevels[index];
+        if (level == null) {
+            level = new Level(cellDegrees(index));
+            mLevels[index] = level;
+        }
+        return level;
+    }
+
+    private final class Level {
+        //Celdas no vacias de un zoom, ordenadas por clave (fila * columnas + columna), con su
+        // grupo ya calculado. Una fila visible se recorre con una busqueda binaria.
+        final double cell;
+        final long columns;
+        final long[] keys;
+        final Cluster[] clusters;
+
+        Level(double cell) {
+            this.cell = cell;
+            columns = (long) Math.ceil(360.0 / cell);
+            int size = mLatitudes.length;
+            long[] pointKeys = new long[size];
+            for (int i = 0; i < size; i++) {
+                pointKeys[i] = row(mLatitudes[i]) * columns + column(mLongitudes[i]);
+            }
+            long[] sorted = pointKeys.clone();
+            Arrays.sort(sorted);
+            int unique = 0;
+            for (int i = 0; i < size; i++) {
+                if (i == 0 || sorted[i] != sorted[i - 1]) {
+                    sorted[unique++] = sorted[i];
+                }
+            }
+            keys = Arrays.copyOf(sorted, unique);
+
+            int[] counts = new int[unique];
+            int[] first = new int[unique];
+            double[] latSums = new double[unique];
+            double[] lonSums = new double[unique];
+            for (int i = 0; i < size; i++) {
+                int c = Arrays.binarySearch(keys, pointKeys[i]);
+                if (counts[c]++ == 0) {
+                    //Se guarda el indice del primer punto para poder mostrar su nombre.
+                    first[c] = i;
+                }
+                latSums[c] += mLatitudes[i];
+                lonSums[c] += mLongitudes[i];
+            }
+            clusters = new Cluster[unique];
+            for (int c = 0; c < unique; c++) {
+                int count = counts[c];
+                clusters[c] = new Cluster(keys[c], count, latSums[c] / count, lonSums[c] / count,
+                        count == 1 ? mNames[first[c]] : null);
+            }
+        }
+
+        long row(double latitude) {
+            return (long) Math.floor((latitude + 90.0) / cell);
+        }
+
+        long column(double longitude) {
+            //La longitud 180 queda en la ultima columna y no en una columna extra.
+            long column = (long) Math.floor((longitude + 180.0) / cell);
+            return Math.max(0, Math.min(columns - 1, column));
+        }
+
+        void collect(long row, long fromColumn, long toColumn, List<Cluster> out) {
+            long from = row * columns + fromColumn;
+            long to = row * columns + toColumn;
+            int position = Arrays.binarySearch(keys, from);
+            if (position < 0) {
+                position = -position - 1;
+            }
+            for (; position < keys.length && keys[position] <= to; position++) {
+                out.add(clusters[position]);
+            }
+        }
+    }
+
+    public static PoiClusterer read(BufferedReader reader) throws IOException {
+        //Lee puntos de interes de lineas "latitud,longitud,nombre".
+        double[] latitudes = new double[1024];
+        double[] longitudes = new double[1024];
+        String[] names = new String[1024];
+        int count = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            String[] parts = line.split(",", 3);
+            if (parts.length < 3) {
+                continue;
+            }
+            try {
+                double lat = Double.parseDouble(parts[0].trim());
+                double lon = Double.parseDouble(parts[1].trim());
+                if (count == latitudes.length) {
+                    latitudes = Arrays.copyOf(latitudes, count * 2);
+                    longitudes = Arrays.copyOf(longitudes, count * 2);
+                    names = Arrays.copyOf(names, count * 2);
+                }
+                latitudes[count] = lat;
+                longitudes[count] = lon;
+                names[count] = parts[2].trim();
+                count++;
+            } catch (NumberFormatException e) {
+                //Encabezados o lineas invalidas se ignoran.
+            }
+        }
+        return new PoiClusterer(Arrays.copyOf(latitudes, count), Arrays.copyOf(longitudes, count),
+                Arrays.copyOf(names, count));
+    }
+}
@@ -0,0 +1,66 @@
+package com.dmovil.appgeolocalizacion;
+
+public class ReplayEngine {
+
+    //Con esta velocidad los puntos se entregan sin esperas, tan rapido como sea posible.
+    public static final float AS_FAST_AS_POSSIBLE = 0f;
+
+    public interface Sink {
+        //Recibe cada punto del recorrido. time ya viene ajustado al reloj actual.
+        void onFix(double latitude, double longitude, long time, float accuracy, float speed);
+    }
+
+    private final TrackBuffer mTrack;
+    private final float mSpeed;
+    private volatile boolean mCancelled;
+
+    public ReplayEngine(TrackBuffer track, float speed) {
+        //speed es el factor de tiempo: 1 es tiempo real, 10 es diez veces mas rapido y
+        // AS_FAST_AS_POSSIBLE no espera entre puntos.
+        if (speed < 0) {
+            throw new IllegalArgumentException("La velocidad no puede ser negativa");
+        }
+        mTrack = track;
+        mSpeed = speed;
+    }
+
+    public int run(Sink sink) throws InterruptedException {
+        //Entrega los puntos en orden en el hilo que llama, respetando el tiempo entre ellos
+        // segun la velocidad. Los tiempos se trasladan para que el primer punto ocurra ahora,
+        // asi los filtros y las metricas ven ubicaciones recientes. Devuelve cuantos entrego.
+        int size = mTrack.size();
+        if (size == 0) {
+            return 0;
+        }
+        long firstTime = mTrack.getTime(0);
+        long startWall = System.currentTimeMillis();
+        long startNanos = System.nanoTime();
+        //Sin tiempos en el recorrido se usa un punto por segundo.
+        boolean hasTimes = firstTime != 0 || mTrack.getTime(size - 1) != 0;
+        int delivered = 0;
+        long offset = 0;
+        for (int i = 0; i < size && !mCancelled; i++) {
+            //Los puntos sin hora o fuera de orden se entregan junto al anterior.
+            offset = hasTimes ? Math.max(offset, mTrack.getTime(i) - firstTime) : i * 1000L;
+            if (mSpeed > 0) {
+                long dueNanos = startNanos + (long) (offset * 1000000L / mSpeed);
+                long waitNanos = dueNanos - System.nanoTime();
+                if (waitNanos > 0) {
+                    Thread.sleep(waitNanos / 1000000L, (int) (waitNanos % 1000000L));
+                }
+            }
+            sink.onFix(mTrack.getLatitude(i), mTrack.getLongitude(i), startWall + offset,
+                    mTrack.getAccuracy(i), mTrack.getSpeed(i));
+            delivered++;
+        }
+        return delivered;
+    }
+
+    public void cancel() {
+        mCancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return mCancelled;
+    }
+}
@@ -0,0 +1,10 @@
+package com.dmovil.appgeolocalizacion;
+
+import java.io.IOException;
+
+public interface ReverseGeocoder {
+
+    //Devuelve la direccion mas cercana a la ubicación o null si no se encontro ninguna.
+    //Puede bloquear, por lo que no se debe llamar en el hilo principal.
+    String getAddress(double latitude, double longitude) throws IOException;
+}
@@ -0,0 +1,484 @@
+package com.dmovil.appgeolocalizacion;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+public class RoadNetwork {
+
+    //Celdas por grado de la cuadricula (0.005 grados, aprox. 550 m).
+    public static final int DEFAULT_CELLS_PER_DEGREE = 200;
+    //Maximo de celdas que ocupa un segmento en la cuadricula. Los segmentos mas grandes
+    // (calles muy largas o lineas mal formadas) se guardan aparte y se revisan en cada
+    // busqueda, asi uno solo no puede llenar la memoria al cargar la red.
+    public static final int MAX_CELLS_PER_SEGMENT = 64;
+    //Los vertices a menos de esto (aprox. 10 cm) se consideran el mismo nodo.
+    private static final double NODE_PRECISION = 1e6;
+
+    //Segmentos en arreglos paralelos: extremos y nodos de cada extremo, para saber si dos
+    // segmentos estan conectados.
+    private final int mSegmentCount;
+    private final double[] mLat1;
+    private final double[] mLon1;
+    private final double[] mLat2;
+    private final double[] mLon2;
+    private final int[] mNode1;
+    private final int[] mNode2;
+    //Largo de cada segmento en metros y, para cada nodo, los segmentos que llegan a el (en
+    // mNodeSegments desde mNodeStart[nodo] hasta mNodeStart[nodo + 1]). Se usan para medir
+    // distancias por calle.
+    private final double[] mLength;
+    private final int mNodeCount;
+    private final int[] mNodeStart;
+    private final int[] mNodeSegments;
+
+    //Indice de cuadricula compacto: claves de celda ordenadas y, para cada una, el rango de
+    // segmentos en mCellSegments que la tocan.
+    private final int mCellsPerDegree;
+    private final long[] mCellKeys;
+    private final int[] mCellStart;
+    private final int[] mCellSegments;
+    private final int[] mLargeSegments;
+
+    public static final class Candidates {
+        //Resultado reutilizable de findCandidates, ordenado por distancia.
+        public final int[] segment;
+        public final double[] latitude;
+        public final double[] longitude;
+        public final double[] distance;
+        //Metros desde el primer extremo del segmento hasta la proyeccion.
+        public final double[] offset;
+        public int size;
+
+        public Candidates(int capacity) {
+            segment = new int[capacity];
+            latitude = new double[capacity];
+            longitude = new double[capacity];
+            distance = new double[capacity];
+            offset = new double[capacity];
+        }
+
+        public int capacity() {
+            return segment.length;
+        }
+    }
+
+    private RoadNetwork(double[] lat1, double[] lon1, double[] lat2, double[] lon2,
+                        int[] node1, int[] node2, int count, int nodeCount, int cellsPerDegree)
+            throws IOException {
+        mSegmentCount = count;
+        mLat1 = lat1;
+        mLon1 = lon1;
+        mLat2 = lat2;
+        mLon2 = lon2;
+        mNode1 = node1;
+        mNode2 = node2;
+        mCellsPerDegree = cellsPerDegree;
+
+        //Grafo de nodos y segmentos en forma compacta, con el mismo conteo y llenado que la
+        // cuadricula.
+        mLength = new double[count];
+        mNodeCount = nodeCount;
+        mNodeStart = new int[nodeCount + 1];
+        for (int i = 0; i < count; i++) {
+            mLength[i] = GeoMath.distance(lat1[i], lon1[i], lat2[i], lon2[i]);
+            mNodeStart[node1[i] + 1]++;
+            if (node2[i] != node1[i]) {
+                mNodeStart[node2[i] + 1]++;
+            }
+        }
+        for (int i = 0; i < nodeCount; i++) {
+            mNodeStart[i + 1] += mNodeStart[i];
+        }
+        mNodeSegments = new int[mNodeStart[nodeCount]];
+        int[] nodeFill = Arrays.copyOf(mNodeStart, nodeCount);
+        for (int i = 0; i < count; i++) {
+            mNodeSegments[nodeFill[node1[i]]++] = i;
+            if (node2[i] != node1[i]) {
+                mNodeSegments[nodeFill[node2[i]]++] = i;
+            }
+        }
+
+        //Cada segmento se registra en todas las celdas que toca su rectangulo. Primero se
+        // reunen y ordenan las claves de celda, luego se cuentan y se llenan los rangos. Los
+        // segmentos que ocuparian mas de MAX_CELLS_PER_SEGMENT celdas quedan fuera del indice.
+        long pairTotal = 0;
+        int largeCount = 0;
+        for (int i = 0; i < count; i++) {
+            long cells = segmentCellCount(i);
+            if (cells > MAX_CELLS_PER_SEGMENT) {
+                largeCount++;
+            } else {
+                pairTotal += cells;
+            }
+        }
+        if (pairTotal > Integer.MAX_VALUE - 8) {
+            throw new IOException("La red de calles es demasiado grande");
+        }
+        int pairCount = (int) pairTotal;
+        mLargeSegments = new int[largeCount];
+        long[] keys = new long[pairCount];
+        int p = 0;
+        int large = 0;
+        for (int i = 0; i < count; i++) {
+            if (segmentCellCount(i) > MAX_CELLS_PER_SEGMENT) {
+                mLargeSegments[large++] = i;
+                continue;
+            }
+            for (int r = minRow(i); r <= maxRow(i); r++) {
+                for (int c = minColumn(i); c <= maxColumn(i); c++) {
+                    keys[p++] = cellKey(r, c);
+                }
+            }
+        }
+        Arrays.sort(keys);
+        int cellCount = 0;
+        for (int i = 0; i < pairCount; i++) {
+            if (i == 0 || keys[i] != keys[i - 1]) {
+                keys[cellCount++] = keys[i];
+            }
+        }
+        mCellKeys = Arrays.copyOf(keys, cellCount);
+        mCellStart = new int[cellCount + 1];
+        for (int i = 0; i < count; i++) {
+            if (segmentCellCount(i) > MAX_CELLS_PER_SEGMENT) {
+                continue;
+            }
+            for (int r = minRow(i); r <= maxRow(i); r++) {
+                for (int c = minColumn(i); c <= maxColumn(i); c++) {
+                    mCellStart[Arrays.binarySearch(mCellKeys, cellKey(r, c)) + 1]++;
+                }
+            }
+        }
+        for (int i = 0; i < cellCount; i++) {
+            mCellStart[i + 1] += mCellStart[i];
+        }
+        mCellSegments = new int[pairCount];
+        int[] fill = Arrays.copyOf(mCellStart, cellCount);
+        for (int i = 0; i < count; i++) {
+            if (segmentCellCount(i) > MAX_CELLS_PER_SEGMENT) {
+                continue;
+            }
+            for (int r = minRow(i); r <= maxRow(i); r++) {
+                for (int c = minColumn(i); c <= maxColumn(i); c++) {
+                    mCellSegments[fill[Arrays.binarySearch(mCellKeys, cellKey(r, c))]++] = i;
+                }
+            }
+        }
+    }
+
+    private long segmentCellCount(int segment) {
+        return (long) (maxRow(segment) - minRow(segment) + 1)
+                * (maxColumn(segment) - minColumn(segment) + 1);
+    }
+
+    private int minRow(int segment) {
+        return row(Math.min(mLat1[segment], mLat2[segment]));
+    }
+
+    private int maxRow(int segment) {
+        return row(Math.max(mLat1[segment], mLat2[segment]));
+    }
+
+    private int minColumn(int segment) {
+        return column(Math.min(mLon1[segment], mLon2[segment]));
+    }
+
+    private int maxColumn(int segment) {
+        return column(Math.max(mLon1[segment], mLon2[segment]));
+    }
+
+    public int getSegmentCount() {
+        return mSegmentCount;
+    }
+
+    public void findCandidates(double latitude, double longitude, double radius,
+                               Candidates out) {
+        //Busca los segmentos a menos de radius metros, proyecta la ubicación sobre cada uno y
+        // deja en out los mas cercanos (como maximo out.capacity()). No reserva memoria.
+        out.size = 0;
+        double metersPerLon = GeoMath.metersPerDegreeLongitude(latitude);
+        double latRadius = radius / GeoMath.METERS_PER_DEGREE;
+        double lonRadius = radius / metersPerLon;
+        int minRow = row(latitude - latRadius);
+        int maxRow = row(latitude + latRadius);
+        int minColumn = column(longitude - lonRadius);
+        int maxColumn = column(longitude + lonRadius);
+        for (int r = minRow; r <= maxRow; r++) {
+            for (int c = minColumn; c <= maxColumn; c++) {
+                int cell = Arrays.binarySearch(mCellKeys, cellKey(r, c));
+                if (cell < 0) {
+                    continue;
+                }
+                for (int i = mCellStart[cell]; i < mCellStart[cell + 1]; i++) {
+                    offer(mCellSegments[i], latitude, longitude, metersPerLon, radius, out);
+                }
+            }
+        }
+        for (int segment : mLargeSegments) {
+            offer(segment, latitude, longitude, metersPerLon, radius, out);
+        }
+    }
+
+    private void offer(int segment, double latitude, double longitude, double metersPerLon,
+                       double radius, Candidates out) {
+        //Un segmento que toca varias celdas puede aparecer mas de una vez.
+        for (int i = 0; i < out.size; i++) {
+            if (out.segment[i] == segment) {
+                return;
+            }
+        }
+        //Proyeccion en un plano local centrado en la ubicación, en metros.
+        double ax = (mLon1[segment] - longitude) * metersPerLon;
+        double ay = (mLat1[segment] - latitude) * GeoMath.METERS_PER_DEGREE;
+        double bx = (mLon2[segment] - longitude) * metersPerLon;
+        double by = (mLat2[segment] - latitude) * GeoMath.METERS_PER_DEGREE;
+        double dx = bx - ax;
+        double dy = by - ay;
+        double lengthSquared = dx * dx + dy * dy;
+        double t = lengthSquared > 0 ? -(ax * dx + ay * dy) / lengthSquared : 0;
+        t = Math.max(0, Math.min(1, t));
+        double px = ax + t * dx;
+        double py = ay + t * dy;
+        double distance = Math.sqrt(px * px + py * py);
+        if (distance > radius) {
+            return;
+        }
+        //Insercion ordenada; si esta lleno se descarta el mas lejano.
+        int position = out.size;
+        while (position > 0 && out.distance[position - 1] > distance) {
+            position--;
+        }
+        if (position >= out.capacity()) {
+            return;
+        }
+        int last = Math.min(out.size, out.capacity() - 1);
+        for (int i = last; i > position; i--) {
+            out.offset[i] = out.offset[i - 1];
+            out.segment[i] = out.segment[i - 1];
+            out.latitude[i] = out.latitude[i - 1];
+            out.longitude[i] = out.longitude[i - 1];
+            out.distance[i] = out.distance[i - 1];
+        }
+        out.segment[position] = segment;
+        out.latitude[position] = latitude + py / GeoMath.METERS_PER_DEGREE;
+        out.longitude[position] = longitude + px / metersPerLon;
+        out.distance[position] = distance;
+        out.offset[position] = t * mLength[segment];
+        out.size = Math.min(out.size + 1, out.capacity());
+    }
+
+    private int row(double latitude) {
+        return (int) Math.floor(latitude * mCellsPerDegree);
+    }
+
+    private int column(double longitude) {
+        return (int) Math.floor(longitude * mCellsPerDegree);
+    }
+
+    private static long cellKey(int row, int column) {
+        return ((long) row << 32) | (column & 0xFFFFFFFFL);
+    }
+
+    public static RoadNetwork read(BufferedReader reader) throws IOException {
+        return read(reader, DEFAULT_CELLS_PER_DEGREE);
+    }
+
+    public static RoadNetwork read(BufferedReader reader, int cellsPerDegree) throws IOException {
+        //Lee calles de un archivo de texto con lineas "id,lat lon;lat lon;..." (una polilinea
+        // por calle, por ejemplo exportada de OpenStreetMap). Cada par de vertices
+        // consecutivos es un segmento. Las lineas invalidas se ignoran.
+        TrackBuffer vertices = new TrackBuffer();
+        int[] starts = new int[64];
+        int roads = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            int comma = line.indexOf(',');
+            if (comma < 0) {
+                continue;
+            }
+            String[] points = line.substring(comma + 1).trim().split(";");
+            if (points.length < 2) {
+                continue;
+            }
+            double[] latitudes = new double[points.length];
+            double[] longitudes = new double[points.length];
+            try {
+                for (int i = 0; i < points.length; i++) {
+                    String[] parts = points[i].trim().split("\\s+");
+                    latitudes[i] = Double.parseDouble(parts[0]);
+                    longitudes[i] = Double.parseDouble(parts[1]);
+                    if (Math.abs(latitudes[i]) > 90 || Math.abs(longitudes[i]) > 180) {
+                        throw new IllegalArgumentException("Vertice fuera de rango");
+                    }
+                }
+            } catch (RuntimeException e) {
+                //Linea invalida: numeros mal escritos, vertices incompletos o fuera de rango.
+                continue;
+            }
+            int start = vertices.size();
+            for (int i = 0; i < points.length; i++) {
+                vertices.append(latitudes[i], longitudes[i], 0, 0, 0);
+            }
+            if (roads + 2 > starts.length) {
+                starts = Arrays.copyOf(starts, starts.length * 2);
+            }
+            starts[roads++] = start;
+        }
+        starts = Arrays.copyOf(starts, roads + 1);
+        starts[roads] = vertices.size();
+
+        int count = vertices.size() - roads;
+        double[] lat1 = new double[Math.max(count, 0)];
+        double[] lon1 = new double[lat1.length];
+        double[] lat2 = new double[lat1.length];
+        double[] lon2 = new double[lat1.length];
+        int[] node1 = new int[lat1.length];
+        int[] node2 = new int[lat1.length];
+        Map<Long, Integer> nodes = new HashMap<>();
+        int segment = 0;
+        for (int road = 0; road < roads; road++) {
+            for (int v = starts[road]; v < starts[road + 1] - 1; v++) {
+                lat1[segment] = vertices.getLatitude(v);
+                lon1[segment] = vertices.getLongitude(v);
+                lat2[segment] = vertices.getLatitude(v + 1);
+                lon2[segment] = vertices.getLongitude(v + 1);
+                node1[segment] = node(nodes, lat1[segment], lon1[segment]);
+                node2[segment] = node(nodes, lat2[segment], lon2[segment]);
+                segment++;
+            }
+        }
+        return new RoadNetwork(lat1, lon1, lat2, lon2, node1, node2, segment, nodes.size(),
+                cellsPerDegree);
+    }
+
+    public final class Router {
+        //Distancias por calle desde un punto sobre un segmento (Dijkstra con limite). Guarda
+        // sus arreglos entre busquedas y solo limpia los nodos que toco, asi una busqueda
+        // cuesta lo que recorre y no lo que mide la red. No es seguro entre hilos.
+        private final double[] mDistance = new double[mNodeCount];
+        private int[] mTouched = new int[64];
+        private int mTouchedCount;
+        private double[] mHeapDistance = new double[64];
+        private int[] mHeapNode = new int[64];
+        private int mHeapSize;
+        private int mSourceSegment = -1;
+        private double mSourceOffset;
+        private double mLimit;
+
+        public Router() {
+            Arrays.fill(mDistance, Double.POSITIVE_INFINITY);
+        }
+
+        public void from(int segment, double offset, double limit) {
+            //Calcula las distancias desde la posicion offset del segmento hasta los nodos a
+            // menos de limit metros.
+            for (int i = 0; i < mTouchedCount; i++) {
+                mDistance[mTouched[i]] = Double.POSITIVE_INFINITY;
+            }
+            mTouchedCount = 0;
+            mHeapSize = 0;
+            mSourceSegment = segment;
+            mSourceOffset = offset;
+            mLimit = limit;
+            relax(mNode1[segment], offset);
+            relax(mNode2[segment], mLength[segment] - offset);
+            while (mHeapSize > 0) {
+                double distance = mHeapDistance[0];
+                int node = mHeapNode[0];
+                pop();
+                if (distance > mDistance[node]) {
+                    //Entrada vieja: el nodo ya se alcanzo por un camino mas corto.
+                    continue;
+                }
+                for (int i = mNodeStart[node]; i < mNodeStart[node + 1]; i++) {
+                    int next = mNodeSegments[i];
+                    int other = mNode1[next] == node ? mNode2[next] : mNode1[next];
+                    relax(other, distance + mLength[next]);
+                }
+            }
+        }
+
+        public double distanceTo(int segment, double offset) {
+            //Metros por calle hasta la posicion offset del segmento, o infinito si esta a mas
+            // del limite. Las calles se consideran de doble sentido.
+            double distance;
+            if (segment == mSourceSegment) {
+                distance = Math.abs(offset - mSourceOffset);
+            } else {
+                distance = Math.min(mDistance[mNode1[segment]] + offset,
+                        mDistance[mNode2[segment]] + mLength[segment] - offset);
+            }
+            return distance <= mLimit ? distance : Double.POSITIVE_INFINITY;
+        }
+
+        private void relax(int node, double distance) {
+            if (distance > mLimit || distance >= mDistance[node]) {
+                return;
+            }
+            if (mDistance[node] == Double.POSITIVE_INFINITY) {
+                if (mTouchedCount == mTouched.length) {
+                    mTouched = Arrays.copyOf(mTouched, mTouchedCount * 2);
+                }
+                mTouched[mTouchedCount++] = node;
+            }
+            mDistance[node] = distance;
+            push(node, distance);
+        }
+
+        private void push(int node, double distance) {
+            if (mHeapSize == mHeapNode.length) {
+                mHeapNode = Arrays.copyOf(mHeapNode, mHeapSize * 2);
+                mHeapDistance = Arrays.copyOf(mHeapDistance, mHeapSize * 2);
+            }
+            int i = mHeapSize++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (mHeapDistance[parent] <= distance) {
+                    break;
+                }
+                mHeapNode[i] = mHeapNode[parent];
+                mHeapDistance[i] = mHeapDistance[parent];
+                i = parent;
+            }
+            mHeapNode[i] = node;
+            mHeapDistance[i] = distance;
+        }
+
+        private void pop() {
+            int node = mHeapNode[--mHeapSize];
+            double distance = mHeapDistance[mHeapSize];
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= mHeapSize) {
+                    break;
+                }
+                if (child + 1 < mHeapSize && mHeapDistance[child + 1] < mHeapDistance[child]) {
+                    child++;
+                }
+                if (mHeapDistance[child] >= distance) {
+                    break;
+                }
+                mHeapNode[i] = mHeapNode[child];
+                mHeapDistance[i] = mHeapDistance[child];
+                i = child;
+            }
+            mHeapNode[i] = node;
+            mHeapDistance[i] = distance;
+        }
+    }
+
+    private static int node(Map<Long, Integer> nodes, double latitude, double longitude) {
+        long key = (Math.round(latitude * NODE_PRECISION) << 32)
+                ^ (Math.round(longitude * NODE_PRECISION) & 0xFFFFFFFFL);
+        Integer id = nodes.get(key);
+        if (id == null) {
+            id = nodes.size();
+            nodes.put(key, id);
+        }
+        return id;
+    }
+}
@@ -0,0 +1,25 @@
+package com.dmovil.appgeolocalizacion;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+public class SnapshotMailbox<T> {
+
+    //Buzon de un solo lugar: cada valor nuevo reemplaza al anterior si aun no se leia, asi
+    // el hilo que lo consume solo procesa el mas reciente.
+    private final AtomicReference<T> mSlot = new AtomicReference<>();
+
+    public boolean post(T value) {
+        //Devuelve true si el buzon estaba vacio; solo en ese caso hay que programar la lectura,
+        // porque si ya habia un valor su lectura ya esta programada.
+        return mSlot.getAndSet(value) == null;
+    }
+
+    public T take() {
+        //Toma el valor mas reciente y deja el buzon vacio.
+        return mSlot.getAndSet(null);
+    }
+
+    public T peek() {
+        return mSlot.get();
+    }
+}
@@ -0,0 +1,60 @@
+package com.dmovil.appgeolocalizacion;
+
+public class SpeedGate implements FixFilter {
+
+    //Despues de estas ubicaciones descartadas seguidas se supone que la ultima aceptada era
+    // la equivocada (un salto que paso el filtro o un reloj adelantado) y se toma la ubicación
+    // actual como nueva referencia; si no, el filtro descartaria todo lo que sigue.
+    public static final int MAX_CONSECUTIVE_REJECTIONS = 5;
+    //Si pasa mas tiempo que esto desde la ultima ubicación aceptada no se compara la
+    // velocidad y se empieza de nuevo, igual que el filtro de Kalman.
+    public static final long MAX_GAP_MILLIS = KalmanFilter.MAX_GAP_MILLIS;
+
+    private final float mMaxSpeed;
+    private int mRejected;
+
+    private boolean mHasPrevious;
+    private double mPreviousLat;
+    private double mPreviousLon;
+    private long mPreviousTime;
+
+    public SpeedGate(float maxSpeedMetersPerSecond) {
+        mMaxSpeed = maxSpeedMetersPerSecond;
+    }
+
+    @Override
+    public boolean accept(Fix fix) {
+        //Descarta las ubicaciones repetidas o fuera de orden y las que implicarian una
+        // velocidad imposible desde la ultima ubicación aceptada.
+        if (mHasPrevious && isImpossible(fix) && ++mRejected < MAX_CONSECUTIVE_REJECTIONS) {
+            return false;
+        }
+        mRejected = 0;
+        mHasPrevious = true;
+        mPreviousLat = fix.latitude;
+        mPreviousLon = fix.longitude;
+        mPreviousTime = fix.time;
+        return true;
+    }
+
+    private boolean isImpossible(Fix fix) {
+        long elapsed = fix.time - mPreviousTime;
+        if (elapsed <= 0) {
+            return true;
+        }
+        if (elapsed > MAX_GAP_MILLIS) {
+            return false;
+        }
+        double meters = GeoMath.equirectangularDistance(
+                mPreviousLat, mPreviousLon, fix.latitude, fix.longitude);
+        //La precision de la ubicación se descuenta para no castigar el ruido normal.
+        double speed = Math.max(0, meters - fix.accuracy) * 1000.0 / elapsed;
+        return speed > mMaxSpeed;
+    }
+
+    @Override
+    public void reset() {
+        mHasPrevious = false;
+        mRejected = 0;
+    }
+}
@@ -0,0 +1,179 @@
+package com.dmovil.appgeolocalizacion;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class TileCache<V> {
+
+    //Cada cuantas escrituras se revisa si el disco supero su capacidad.
+    private static final int TRIM_INTERVAL = 64;
+    private static final String TILE_SUFFIX = ".tile";
+
+    public interface Codec<V> {
+        //Convierte el valor de una tesela a bytes para el nivel en disco.
+        void write(DataOutputStream out, V value) throws IOException;
+
+        V read(DataInputStream in) throws IOException;
+    }
+
+    private final int mBits;
+    private final LinkedHashMap<Long, V> mMemory;
+    private final File mDirectory;
+    private final int mDiskCapacity;
+    private final Codec<V> mCodec;
+    private int mWritesSinceTrim;
+
+    public TileCache(int bits, final int memoryCapacity, File directory, int diskCapacity,
+                     Codec<V> codec) {
+        //Las teselas son celdas de geohash de bits bits. En memoria se guardan como maximo
+        // memoryCapacity teselas (LRU); en disco, un archivo por tesela en directory, como
+        // maximo diskCapacity. Con directory null solo se usa la memoria.
+        mBits = bits;
+        mDirectory = directory;
+        mDiskCapacity = diskCapacity;
+        mCodec = codec;
+        mMemory = new LinkedHashMap<Long, V>(memoryCapacity, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, V> eldest) {
+                return size() > memoryCapacity;
+            }
+        };
+    }
+
+    public long tileKey(double latitude, double longitude) {
+        return Geohash.encode(latitude, longitude, mBits);
+    }
+
+    public double tileSizeMeters(double latitude) {
+        //Lado mayor de una tesela a esta latitud; avanzar esta distancia en cualquier
+        // direccion lleva a una tesela vecina.
+        double heightDegrees = 180.0 / (1L << (mBits / 2));
+        double widthDegrees = 360.0 / (1L << ((mBits + 1) / 2));
+        return Math.max(heightDegrees * GeoMath.METERS_PER_DEGREE,
+                widthDegrees * GeoMath.metersPerDegreeLongitude(latitude));
+    }
+
+    public synchronized V getCached(long key) {
+        //Solo memoria; se puede llamar desde el hilo principal.
+        return mMemory.get(key);
+    }
+
+    public V get(long key) {
+        //Busca en memoria y despues en disco; lo leido del disco pasa a memoria. Puede leer
+        // del disco, asi que no debe llamarse en el hilo principal.
+        V value = getCached(key);
+        if (value != null || mDirectory == null) {
+            return value;
+        }
+        File file = tileFile(key);
+        if (!file.exists()) {
+            return null;
+        }
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            try {
+                value = mCodec.read(in);
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            //Archivo dañado o incompleto: se descarta.
+            file.delete();
+            return null;
+        }
+        //La fecha de modificacion sirve como orden LRU del disco.
+        file.setLastModified(System.currentTimeMillis());
+        synchronized (this) {
+            mMemory.put(key, value);
+        }
+        return value;
+    }
+
+    public void put(long key, V value) {
+        //Guarda en memoria y en disco. La escritura usa un archivo temporal que se renombra,
+        // asi una tesela nunca queda a medias.
+        synchronized (this) {
+            mMemory.put(key, value);
+        }
+        if (mDirectory == null) {
+            return;
+        }
+        try {
+            if (!mDirectory.isDirectory() && !mDirectory.mkdirs()) {
+                throw new IOException("No se pudo crear " + mDirectory);
+            }
+            File file = tileFile(key);
+            File temp = new File(mDirectory, file.getName() + ".tmp");
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+            try {
+                mCodec.write(out, value);
+            } finally {
+                out.close();
+            }
+            if (!temp.renameTo(file)) {
+                temp.delete();
+                throw new IOException("No se pudo guardar " + file);
+            }
+        } catch (IOException e) {
+            //El nivel en disco es opcional; la tesela sigue en memoria.
+            return;
+        }
+        boolean trim;
+        synchronized (this) {
+            trim = ++mWritesSinceTrim >= TRIM_INTERVAL;
+            if (trim) {
+                mWritesSinceTrim = 0;
+            }
+        }
+        if (trim) {
+            trimDisk();
+        }
+    }
+
+    public synchronized int memorySize() {
+        return mMemory.size();
+    }
+
+    public synchronized void clearMemory() {
+        mMemory.clear();
+    }
+
+    private void trimDisk() {
+        //Si hay mas teselas que la capacidad se borran las usadas hace mas tiempo, dejando un
+        // margen para no repetir esto en cada escritura.
+        File[] files = mDirectory.listFiles();
+        if (files == null || files.length <= mDiskCapacity) {
+            return;
+        }
+        final long[] modified = new long[files.length];
+        Integer[] order = new Integer[files.length];
+        for (int i = 0; i < files.length; i++) {
+            modified[i] = files[i].lastModified();
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return Long.compare(modified[a], modified[b]);
+            }
+        });
+        int remove = files.length - mDiskCapacity * 9 / 10;
+        for (int i = 0; i < remove; i++) {
+            files[order[i]].delete();
+        }
+    }
+
+    private File tileFile(long key) {
+        return new File(mDirectory, Long.toHexString(key) + TILE_SUFFIX);
+    }
+}
@@ -0,0 +1,201 @@
+package com.dmovil.appgeolocalizacion;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+
+public final class TraceReader {
+
+    //Nudos a metros por segundo (NMEA reporta la velocidad en nudos).
+    private static final float KNOTS_TO_MPS = 0.514444f;
+
+    private TraceReader() {
+    }
+
+    public static TrackBuffer read(File file) throws IOException {
+        //Lee un recorrido grabado segun su formato: un directorio es un TrackLog de la app,
+        // ".gpx" es GPX y cualquier otro archivo se lee como NMEA.
+        TrackBuffer track = new TrackBuffer();
+        if (file.isDirectory()) {
+            readTrackLog(new TrackLog(file), track);
+            return track;
+        }
+        BufferedReader reader = new BufferedReader(new FileReader(file));
+        try {
+            if (file.getName().toLowerCase().endsWith(".gpx")) {
+                readGpx(reader, track);
+            } else {
+                readNmea(reader, track);
+            }
+        } finally {
+            reader.close();
+        }
+        return track;
+    }
+
+    public static void readTrackLog(TrackLog log, final TrackBuffer track) throws IOException {
+        log.replay(new TrackLog.Visitor() {
+            @Override
+            public void visit(double latitude, double longitude, long time, float accuracy) {
+                track.append(latitude, longitude, time, accuracy, 0f);
+            }
+        });
+    }
+
+    public static void readGpx(BufferedReader reader, TrackBuffer track) throws IOException {
+        //Lectura sencilla de GPX: toma los elementos trkpt, rtept o wpt con sus atributos
+        // lat/lon y su elemento time. Se procesa por partes, sin cargar todo el documento.
+        StringBuilder pending = new StringBuilder();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            pending.append(line).append('\n');
+            int consumed = 0;
+            while (true) {
+                int start = findPointStart(pending, consumed);
+                if (start < 0) {
+                    //Se conserva solo lo que podria ser el inicio de una etiqueta incompleta.
+                    consumed = Math.max(consumed, pending.length() - 8);
+                    break;
+                }
+                int tagEnd = pending.indexOf(">", start);
+                if (tagEnd < 0) {
+                    consumed = start;
+                    break;
+                }
+                int end;
+                if (pending.charAt(tagEnd - 1) == '/') {
+                    end = tagEnd + 1;
+                } else {
+                    String closing = "</" + pending.substring(start + 1, pending.indexOf(" ", start)) + ">";
+                    int close = pending.indexOf(closing, tagEnd);
+                    if (close < 0) {
+                        consumed = start;
+                        break;
+                    }
+                    end = close + closing.length();
+                }
+                parseGpxPoint(pending.substring(start, end), track);
+                consumed = end;
+            }
+            pending.delete(0, Math.max(0, consumed));
+        }
+    }
+
+    private static int findPointStart(StringBuilder text, int from) {
+        int best = -1;
+        for (String tag : new String[]{"<trkpt ", "<rtept ", "<wpt "}) {
+            int index = text.indexOf(tag, from);
+            if (index >= 0 && (best < 0 || index < best)) {
+                best = index;
+            }
+        }
+        return best;
+    }
+
+    private static void parseGpxPoint(String element, TrackBuffer track) {
+        String lat = attribute(element, "lat");
+        String lon = attribute(element, "lon");
+        if (lat == null || lon == null) {
+            return;
+        }
+        long time = 0;
+        int timeStart = element.indexOf("<time>");
+        int timeEnd = element.indexOf("</time>");
+        if (timeStart >= 0 && timeEnd > timeStart) {
+            try {
+                time = IsoTime.parse(element.substring(timeStart + 6, timeEnd).trim());
+            } catch (IllegalArgumentException e) {
+                time = 0;
+            }
+        }
+        try {
+            track.append(Double.parseDouble(lat), Double.parseDouble(lon), time, 0f, 0f);
+        } catch (NumberFormatException e) {
+            //Punto invalido, se ignora.
+        }
+    }
+
+    private static String attribute(String element, String name) {
+        int index = element.indexOf(" " + name + "=");
+        if (index < 0) {
+            return null;
+        }
+        int quote = index + name.length() + 2;
+        char delimiter = element.charAt(quote);
+        int end = element.indexOf(delimiter, quote + 1);
+        return end < 0 ? null : element.substring(quote + 1, end);
+    }
+
+    public static void readNmea(BufferedReader reader, TrackBuffer track) throws IOException {
+        //Lee las sentencias RMC ($GPRMC, $GNRMC, ...), que traen fecha, hora, posicion y
+        // velocidad. Las demas sentencias y las que no pasan el checksum se ignoran.
+        String line;
+        while ((line = reader.readLine()) != null) {
+            line = line.trim();
+            if (line.length() < 7 || line.charAt(0) != '$' || !line.startsWith("RMC", 3)
+                    || !validChecksum(line)) {
+                continue;
+            }
+            int star = line.indexOf('*');
+            String[] fields = (star >= 0 ? line.substring(0, star) : line).split(",", -1);
+            if (fields.length < 10 || !"A".equals(fields[2])) {
+                continue;
+            }
+            try {
+                double latitude = nmeaDegrees(fields[3], 2);
+                if ("S".equals(fields[4])) {
+                    latitude = -latitude;
+                }
+                double longitude = nmeaDegrees(fields[5], 3);
+                if ("W".equals(fields[6])) {
+                    longitude = -longitude;
+                }
+                float speed = fields[7].isEmpty() ? 0f : Float.parseFloat(fields[7]) * KNOTS_TO_MPS;
+                long time = nmeaTime(fields[1], fields[9]);
+                track.append(latitude, longitude, time, 0f, speed);
+            } catch (RuntimeException e) {
+                //Sentencia mal formada, se ignora.
+            }
+        }
+    }
+
+    private static boolean validChecksum(String line) {
+        int star = line.indexOf('*');
+        if (star < 0) {
+            return true;
+        }
+        if (star + 3 > line.length()) {
+            return false;
+        }
+        int checksum = 0;
+        for (int i = 1; i < star; i++) {
+            checksum ^= line.charAt(i);
+        }
+        try {
+            return checksum == Integer.parseInt(line.substring(star + 1, star + 3), 16);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private static double nmeaDegrees(String value, int degreeDigits) {
+        //Formato gradosminutos: "1925.9563" son 19 grados y 25.9563 minutos.
+        double degrees = Integer.parseInt(value.substring(0, degreeDigits));
+        double minutes = Double.parseDouble(value.substring(degreeDigits));
+        return degrees + minutes / 60.0;
+    }
+
+    private static long nmeaTime(String time, String date) {
+        //Hora "hhmmss.sss" y fecha "ddmmyy" en UTC.
+        int day = Integer.parseInt(date.substring(0, 2));
+        int month = Integer.parseInt(date.substring(2, 4));
+        int shortYear = Integer.parseInt(date.substring(4, 6));
+        int year = shortYear < 80 ? 2000 + shortYear : 1900 + shortYear;
+        int hour = Integer.parseInt(time.substring(0, 2));
+        int minute = Integer.parseInt(time.substring(2, 4));
+        double seconds = Double.parseDouble(time.substring(4));
+        return ((IsoTime.daysFromCivil(year, month, day) * 24 + hour) * 60 + minute) * 60000L
+                + Math.round(seconds * 1000);
+    }
+}
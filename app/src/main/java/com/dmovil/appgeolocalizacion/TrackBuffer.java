@@ -0,0 +1,146 @@
+package com.dmovil.appgeolocalizacion;
+
+import java.util.Arrays;
+
+public class TrackBuffer {
+
+    //Capacidad inicial de los arreglos.
+    public static final int DEFAULT_INITIAL_CAPACITY = 256;
+
+    public interface Visitor {
+        //Recibe cada punto del recorrido como valores primitivos, sin crear objetos.
+        void visit(int index, double latitude, double longitude, long time,
+                   float accuracy, float speed);
+    }
+
+    //Arreglos paralelos: el punto i ocupa la misma posicion en cada arreglo.
+    private double[] mLatitudes;
+    private double[] mLongitudes;
+    private long[] mTimes;
+    private float[] mAccuracies;
+    private float[] mSpeeds;
+
+    //Si es mayor que cero el buffer deja de crecer al llegar a este tamaño y sobrescribe
+    // los puntos mas antiguos (anillo).
+    private final int mMaxCapacity;
+    private int mStart;
+    private int mSize;
+
+    public TrackBuffer() {
+        this(DEFAULT_INITIAL_CAPACITY, 0);
+    }
+
+    public TrackBuffer(int initialCapacity, int maxCapacity) {
+        if (initialCapacity <= 0) {
+            throw new IllegalArgumentException("La capacidad inicial debe ser mayor que cero");
+        }
+        if (maxCapacity > 0 && initialCapacity > maxCapacity) {
+            initialCapacity = maxCapacity;
+        }
+        mMaxCapacity = maxCapacity;
+        mLatitudes = new double[initialCapacity];
+        mLongitudes = new double[initialCapacity];
+        mTimes = new long[initialCapacity];
+        mAccuracies = new float[initialCapacity];
+        mSpeeds = new float[initialCapacity];
+    }
+
+    public void append(double latitude, double longitude, long time, float accuracy, float speed) {
+        //Agrega un punto. Solo se reservan arreglos nuevos cuando hay que crecer (al doble),
+        // por lo que el costo amortizado no genera basura.
+        int capacity = mLatitudes.length;
+        int slot;
+        if (mSize < capacity) {
+            slot = (mStart + mSize) % capacity;
+            mSize++;
+        } else if (mMaxCapacity <= 0 || capacity < mMaxCapacity) {
+            grow();
+            slot = mSize;
+            mSize++;
+        } else {
+            slot = mStart;
+            mStart = (mStart + 1) % capacity;
+        }
+        mLatitudes[slot] = latitude;
+        mLongitudes[slot] = longitude;
+        mTimes[slot] = time;
+        mAccuracies[slot] = accuracy;
+        mSpeeds[slot] = speed;
+    }
+
+    private void grow() {
+        //Solo se crece mientras el anillo no ha dado la vuelta, asi que mStart es cero.
+        int capacity = mLatitudes.length;
+        int newCapacity = capacity * 2;
+        if (mMaxCapacity > 0 && newCapacity > mMaxCapacity) {
+            newCapacity = mMaxCapacity;
+        }
+        mLatitudes = Arrays.copyOf(mLatitudes, newCapacity);
+        mLongitudes = Arrays.copyOf(mLongitudes, newCapacity);
+        mTimes = Arrays.copyOf(mTimes, newCapacity);
+        mAccuracies = Arrays.copyOf(mAccuracies, newCapacity);
+        mSpeeds = Arrays.copyOf(mSpeeds, newCapacity);
+    }
+
+    private int slot(int index) {
+        if (index < 0 || index >= mSize) {
+            throw new IndexOutOfBoundsException("Indice: " + index + ", tamaño: " + mSize);
+        }
+        return (mStart + index) % mLatitudes.length;
+    }
+
+    public double getLatitude(int index) {
+        return mLatitudes[slot(index)];
+    }
+
+    public double getLongitude(int index) {
+        return mLongitudes[slot(index)];
+    }
+
+    public long getTime(int index) {
+        return mTimes[slot(index)];
+    }
+
+    public float getAccuracy(int index) {
+        return mAccuracies[slot(index)];
+    }
+
+    public float getSpeed(int index) {
+        return mSpeeds[slot(index)];
+    }
+
+    public void forEach(Visitor visitor) {
+        forEach(0, mSize, visitor);
+    }
+
+    public void forEach(int from, int to, Visitor visitor) {
+        //Recorre los puntos [from, to) en orden sin crear iteradores ni objetos.
+        if (from < 0 || to > mSize || from > to) {
+            throw new IndexOutOfBoundsException("Rango: [" + from + ", " + to + "), tamaño: " + mSize);
+        }
+        int capacity = mLatitudes.length;
+        for (int i = from; i < to; i++) {
+            int slot = (mStart + i) % capacity;
+            visitor.visit(i, mLatitudes[slot], mLongitudes[slot], mTimes[slot],
+                    mAccuracies[slot], mSpeeds[slot]);
+        }
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public boolean isEmpty() {
+        return mSize == 0;
+    }
+
+    public int capacity() {
+        return mLatitudes.length;
+    }
+
+    public void clear() {
+        //Conserva los arreglos para reutilizarlos.
+        mStart = 0;
+        mSize = 0;
+    }
+}
@@ -0,0 +1,218 @@
+package com.dmovil.appgeolocalizacion;
+
+import java.io.IOException;
+import java.io.Writer;
+
+public class TrackExporter {
+
+    public static final int FORMAT_GPX = 0;
+    public static final int FORMAT_GEOJSON = 1;
+
+    //Las coordenadas se exportan con 7 decimales, la misma precision con la que se guardan.
+    public static final int EXPORT_DECIMALS = 7;
+
+    private final int mFormat;
+    private long mFromTime = Long.MIN_VALUE;
+    private long mToTime = Long.MAX_VALUE;
+    private double mTolerance;
+
+    //Estado de la exportacion en curso. Solo se conserva un punto de anclaje y el ultimo
+    // punto leido, asi que la memoria no depende del largo del recorrido.
+    private Writer mWriter;
+    private final StringBuilder mLine = new StringBuilder(128);
+    private char[] mChars = new char[128];
+    private long mWritten;
+    private long mFirstTime;
+    private long mLastWrittenTime;
+    private boolean mHasAnchor;
+    private double mAnchorLat;
+    private double mAnchorLon;
+    private boolean mHasDirection;
+    private double mDirectionLat;
+    private double mDirectionLon;
+    private boolean mHasPending;
+    private double mPendingLat;
+    private double mPendingLon;
+    private long mPendingTime;
+
+    public TrackExporter(int format) {
+        if (format != FORMAT_GPX && format != FORMAT_GEOJSON) {
+            throw new IllegalArgumentException("Formato desconocido: " + format);
+        }
+        mFormat = format;
+    }
+
+    public TrackExporter setTimeRange(long fromTime, long toTime) {
+        //Solo se exportan los puntos con fromTime <= tiempo <= toTime.
+        mFromTime = fromTime;
+        mToTime = toTime;
+        return this;
+    }
+
+    public TrackExporter setTolerance(double toleranceMeters) {
+        //Con una tolerancia mayor a cero se omiten los puntos que se alejan menos que ella de
+        // la linea recta del tramo (Reumann-Witkam, en una sola pasada). Cero exporta todo.
+        mTolerance = toleranceMeters;
+        return this;
+    }
+
+    public synchronized long export(TrackLog log, Writer writer) throws IOException {
+        //Recorre el registro una sola vez y escribe cada punto en cuanto se decide, sin armar
+        // el documento en memoria. El llamador debe pasar un Writer con buffer y cerrarlo.
+        // Devuelve el numero de puntos escritos.
+        mWriter = writer;
+        mWritten = 0;
+        mHasAnchor = false;
+        mHasDirection = false;
+        mHasPending = false;
+        try {
+            writeHeader();
+            log.replay(new TrackLog.Visitor() {
+                @Override
+                public void visit(double latitude, double longitude, long time, float accuracy) {
+                    if (time < mFromTime || time > mToTime) {
+                        return;
+                    }
+                    try {
+                        onPoint(latitude, longitude, time);
+                    } catch (IOException e) {
+                        throw new WriteException(e);
+                    }
+                }
+            });
+            if (mHasPending) {
+                writePoint(mPendingLat, mPendingLon, mPendingTime);
+            }
+            writeFooter();
+            writer.flush();
+        } catch (WriteException e) {
+            throw e.getCause();
+        } finally {
+            mWriter = null;
+        }
+        return mWritten;
+    }
+
+    private void onPoint(double latitude, double longitude, long time) throws IOException {
+        if (mTolerance <= 0) {
+            writePoint(latitude, longitude, time);
+            return;
+        }
+        if (!mHasAnchor) {
+            writePoint(latitude, longitude, time);
+            mHasAnchor = true;
+            mAnchorLat = latitude;
+            mAnchorLon = longitude;
+            return;
+        }
+        if (!mHasDirection) {
+            //El primer punto despues del anclaje define la direccion del tramo.
+            mHasDirection = GeoMath.equirectangularDistance(
+                    mAnchorLat, mAnchorLon, latitude, longitude) > mTolerance;
+            if (mHasDirection) {
+                mDirectionLat = latitude;
+                mDirectionLon = longitude;
+            }
+        } else if (distanceToLine(latitude, longitude) > mTolerance) {
+            //El punto se sale del tramo: el anterior se escribe y es el nuevo anclaje.
+            writePoint(mPendingLat, mPendingLon, mPendingTime);
+            mAnchorLat = mPendingLat;
+            mAnchorLon = mPendingLon;
+            mDirectionLat = latitude;
+            mDirectionLon = longitude;
+        }
+        mHasPending = true;
+        mPendingLat = latitude;
+        mPendingLon = longitude;
+        mPendingTime = time;
+    }
+
+    private double distanceToLine(double latitude, double longitude) {
+        //Distancia en metros del punto a la recta anclaje-direccion, en un plano local.
+        double metersPerLon = GeoMath.metersPerDegreeLongitude(mAnchorLat);
+        double dx = (mDirectionLon - mAnchorLon) * metersPerLon;
+        double dy = (mDirectionLat - mAnchorLat) * GeoMath.METERS_PER_DEGREE;
+        double px = (longitude - mAnchorLon) * metersPerLon;
+        double py = (latitude - mAnchorLat) * GeoMath.METERS_PER_DEGREE;
+        double length = Math.sqrt(dx * dx + dy * dy);
+        return Math.abs(dx * py - dy * px) / length;
+    }
+
+    private void writeHeader() throws IOException {
+        if (mFormat == FORMAT_GPX) {
+            mWriter.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                    + "<gpx version=\"1.1\" creator=\"AppGeolocalizacion\""
+                    + " xmlns=\"http://www.topografix.com/GPX/1/1\">\n"
+                    + "<trk><name>Recorrido</name><trkseg>\n");
+        } else {
+            mWriter.write("{\"type\":\"FeatureCollection\",\"features\":[{\"type\":\"Feature\","
+                    + "\"geometry\":{\"type\":\"LineString\",\"coordinates\":[\n");
+        }
+    }
+
+    private void writeFooter() throws IOException {
+        if (mFormat == FORMAT_GPX) {
+            mWriter.write("</trkseg></trk>\n</gpx>\n");
+            return;
+        }
+        //Las propiedades van despues de la geometria porque solo se conocen al final.
+        StringBuilder line = mLine;
+        line.setLength(0);
+        line.append("\n]},\"properties\":{\"points\":").append(mWritten);
+        if (mWritten > 0) {
+            IsoTime.append(line.append(",\"startTime\":\""), mFirstTime).append('"');
+            IsoTime.append(line.append(",\"endTime\":\""), mLastWrittenTime).append('"');
+        }
+        line.append("}}]}\n");
+        writeLine();
+    }
+
+    private void writePoint(double latitude, double longitude, long time) throws IOException {
+        //Cada punto se arma en un StringBuilder reutilizado y se copia al Writer.
+        StringBuilder line = mLine;
+        line.setLength(0);
+        if (mFormat == FORMAT_GPX) {
+            line.append("<trkpt lat=\"");
+            CoordinateFormat.append(line, latitude, EXPORT_DECIMALS).append("\" lon=\"");
+            CoordinateFormat.append(line, longitude, EXPORT_DECIMALS).append("\"><time>");
+            IsoTime.append(line, time).append("</time>");
+            line.append("</trkpt>\n");
+        } else {
+            if (mWritten > 0) {
+                line.append(",\n");
+            }
+            line.append('[');
+            CoordinateFormat.append(line, longitude, EXPORT_DECIMALS).append(',');
+            CoordinateFormat.append(line, latitude, EXPORT_DECIMALS).append(']');
+        }
+        if (mWritten == 0) {
+            mFirstTime = time;
+        }
+        mLastWrittenTime = time;
+        mWritten++;
+        writeLine();
+    }
+
+    private void writeLine() throws IOException {
+        int length = mLine.length();
+        if (mChars.length < length) {
+            mChars = new char[length * 2];
+        }
+        mLine.getChars(0, length, mChars, 0);
+        mWriter.write(mChars, 0, length);
+    }
+
+    private static final class WriteException extends RuntimeException {
+        //Lleva un IOException a traves del Visitor, que no puede lanzarlo.
+        private static final long serialVersionUID = 1L;
+
+        WriteException(IOException cause) {
+            super(cause);
+        }
+
+        @Override
+        public IOException getCause() {
+            return (IOException) super.getCause();
+        }
+    }
+}
@@ -0,0 +1,377 @@
+package com.dmovil.appgeolocalizacion;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.zip.CRC32;
+
+public class TrackLog {
+
+    //Tamaño maximo de un segmento; al superarlo se empieza uno nuevo.
+    public static final int SEGMENT_BYTES = 1024 * 1024;
+    //Numero de registros que se acumulan en memoria antes de escribirlos al archivo. Con 1
+    // cada punto llega al archivo al agregarse, asi que si el proceso termina no se pierde
+    // nada; solo la sincronizacion con el disco (force) se difiere hasta el cambio de
+    // segmento, close o endBatch, y un corte de energia puede perder los puntos posteriores.
+    public static final int DEFAULT_FLUSH_RECORDS = 1;
+
+    //Cada segmento empieza con un numero magico. "TRK2" guarda el CRC32 completo de cada
+    // registro; los segmentos "TRK1" (un byte de CRC) se siguen pudiendo leer.
+    private static final int MAGIC = 0x54524B32;
+    private static final int MAGIC_V1 = 0x54524B31;
+    private static final int HEADER_BYTES = 4;
+    private static final int CRC_BYTES = 4;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".trk";
+    //Longitud maxima de un registro: largo + 4 varints de hasta 10 bytes + checksum.
+    private static final int MAX_RECORD_BYTES = 1 + 40 + CRC_BYTES;
+    //Las coordenadas se guardan en punto fijo con 7 decimales (aprox. 1 cm).
+    private static final double FIXED_POINT = 1e7;
+
+    public interface Visitor {
+        //Recibe cada punto guardado, en orden.
+        void visit(double latitude, double longitude, long time, float accuracy);
+    }
+
+    private final File mDirectory;
+    private final int mFlushRecords;
+    private final ByteBuffer mWriteBuffer = ByteBuffer.allocate(8 * 1024);
+    private final CRC32 mCrc = new CRC32();
+
+    private FileChannel mChannel;
+    private int mSegmentNumber;
+    private long mSegmentSize;
+    private int mPendingRecords;
+    //Mientras se procesa un lote de ubicaciones no se escribe cada mFlushRecords registros.
+    private boolean mBatching;
+
+    //Ultimos valores escritos; los registros guardan la diferencia con ellos.
+    private long mLastLat;
+    private long mLastLon;
+    private long mLastTime;
+
+    public TrackLog(File directory) {
+        this(directory, DEFAULT_FLUSH_RECORDS);
+    }
+
+    public TrackLog(File directory, int flushRecords) {
+        //No se toca el disco aqui; el archivo se abre con la primera escritura.
+        mDirectory = directory;
+        mFlushRecords = flushRecords;
+    }
+
+    public synchronized void append(double latitude, double longitude, long time, float accuracy)
+            throws IOException {
+        //Codifica el punto como diferencias con el anterior (zigzag + varint) y lo deja en el
+        // buffer de escritura. Solo se escribe al archivo cada mFlushRecords registros.
+        ensureOpen();
+        if (mSegmentSize + mWriteBuffer.position() + MAX_RECORD_BYTES > SEGMENT_BYTES) {
+            rollover();
+        }
+        if (mWriteBuffer.remaining() < MAX_RECORD_BYTES) {
+            flushBuffer();
+        }
+
+        long lat = Math.round(latitude * FIXED_POINT);
+        long lon = Math.round(longitude * FIXED_POINT);
+        long accuracyDm = Math.max(0, Math.round(accuracy * 10.0));
+
+        int start = mWriteBuffer.position();
+        //Se reserva un byte para el largo; la carga nunca pasa de 127 bytes.
+        mWriteBuffer.put((byte) 0);
+        writeVarint(mWriteBuffer, zigzag(lat - mLastLat));
+        writeVarint(mWriteBuffer, zigzag(lon - mLastLon));
+        writeVarint(mWriteBuffer, zigzag(time - mLastTime));
+        writeVarint(mWriteBuffer, accuracyDm);
+        int payloadLength = mWriteBuffer.position() - start - 1;
+        mWriteBuffer.put(start, (byte) payloadLength);
+        mCrc.reset();
+        mCrc.update(mWriteBuffer.array(), start + 1, payloadLength);
+        mWriteBuffer.putInt((int) mCrc.getValue());
+
+        mLastLat = lat;
+        mLastLon = lon;
+        mLastTime = time;
+        if (++mPendingRecords >= mFlushRecords && !mBatching) {
+            flushBuffer();
+        }
+    }
+
+    public synchronized void flush() throws IOException {
+        //Escribe al archivo los registros que estan en memoria.
+        if (mChannel != null) {
+            flushBuffer();
+        }
+    }
+
+    public synchronized void beginBatch() {
+        //Los registros siguientes se acumulan en memoria hasta endBatch (o hasta llenar el
+        // buffer de escritura).
+        mBatching = true;
+    }
+
+    public synchronized void endBatch() throws IOException {
+        //Escribe todo el lote con una sola escritura y una sola sincronizacion con el disco.
+        mBatching = false;
+        if (mChannel != null && mWriteBuffer.position() > 0) {
+            flushBuffer();
+            mChannel.force(false);
+        }
+    }
+
+    public synchronized void close() throws IOException {
+        //Escribe lo pendiente, lo sincroniza con el disco y cierra el segmento.
+        if (mChannel != null) {
+            flushBuffer();
+            mChannel.force(false);
+            mChannel.close();
+            mChannel = null;
+        }
+    }
+
+    public void replay(Visitor visitor) throws IOException {
+        //Lee todos los segmentos en orden mapeandolos en memoria. Antes se escribe lo que
+        // este pendiente para que la lectura incluya los ultimos puntos. Solo se toma el
+        // candado para fijar hasta donde leer: los archivos solo crecen, asi que la lectura
+        // de un recorrido largo no detiene a append.
+        File[] segments;
+        long[] lengths;
+        synchronized (this) {
+            flush();
+            segments = listSegments();
+            lengths = new long[segments.length];
+            for (int i = 0; i < segments.length; i++) {
+                lengths[i] = segments[i].length();
+            }
+        }
+        for (int i = 0; i < segments.length; i++) {
+            RandomAccessFile file = new RandomAccessFile(segments[i], "r");
+            try {
+                FileChannel channel = file.getChannel();
+                long length = Math.min(lengths[i], channel.size());
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+                readSegment(buffer, visitor, null);
+            } finally {
+                file.close();
+            }
+        }
+    }
+
+    public synchronized long sizeOnDisk() {
+        long total = 0;
+        for (File segment : listSegments()) {
+            total += segment.length();
+        }
+        return total + mWriteBuffer.position();
+    }
+
+    private void ensureOpen() throws IOException {
+        if (mChannel != null) {
+            return;
+        }
+        if (!mDirectory.isDirectory() && !mDirectory.mkdirs()) {
+            throw new IOException("No se pudo crear el directorio " + mDirectory);
+        }
+        File[] segments = listSegments();
+        if (segments.length == 0) {
+            openSegment(1);
+        } else {
+            recover(segments[segments.length - 1]);
+        }
+    }
+
+    private void recover(File segment) throws IOException {
+        //Si la aplicación termino a mitad de una escritura, el ultimo registro puede estar
+        // incompleto. Se lee el ultimo segmento hasta el ultimo registro valido, se corta el
+        // resto y se recuperan los valores para seguir escribiendo diferencias.
+        mSegmentNumber = segmentNumber(segment);
+        RandomAccessFile file = new RandomAccessFile(segment, "rw");
+        FileChannel channel = file.getChannel();
+        long validEnd;
+        if (channel.size() < HEADER_BYTES) {
+            validEnd = -1;
+        } else {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            long[] last = new long[3];
+            validEnd = readSegment(buffer, null, last);
+            mLastLat = last[0];
+            mLastLon = last[1];
+            mLastTime = last[2];
+        }
+        if (validEnd < 0 || !hasCurrentFormat(channel)) {
+            //Sin encabezado: se reescribe el segmento desde cero. Con un encabezado de otro
+            // formato (o dañado) el segmento se conserva y se sigue en uno nuevo.
+            boolean empty = channel.size() < HEADER_BYTES;
+            channel.close();
+            openSegment(empty ? mSegmentNumber : mSegmentNumber + 1);
+            return;
+        }
+        channel.truncate(validEnd);
+        channel.position(validEnd);
+        mChannel = channel;
+        mSegmentSize = validEnd;
+    }
+
+    private static boolean hasCurrentFormat(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        channel.read(header, 0);
+        header.flip();
+        return header.remaining() == HEADER_BYTES && header.getInt() == MAGIC;
+    }
+
+    private void openSegment(int number) throws IOException {
+        //Cada segmento es independiente: empieza con el encabezado y sus diferencias parten
+        // de cero, asi un segmento dañado no afecta a los demas.
+        mSegmentNumber = number;
+        RandomAccessFile file = new RandomAccessFile(segmentFile(number), "rw");
+        mChannel = file.getChannel();
+        mChannel.truncate(0);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.putInt(MAGIC);
+        header.flip();
+        while (header.hasRemaining()) {
+            mChannel.write(header);
+        }
+        mSegmentSize = HEADER_BYTES;
+        mLastLat = 0;
+        mLastLon = 0;
+        mLastTime = 0;
+    }
+
+    private void rollover() throws IOException {
+        //Cierra el segmento actual (sincronizado con el disco) y abre el siguiente.
+        flushBuffer();
+        mChannel.force(false);
+        mChannel.close();
+        openSegment(mSegmentNumber + 1);
+    }
+
+    private void flushBuffer() throws IOException {
+        mWriteBuffer.flip();
+        while (mWriteBuffer.hasRemaining()) {
+            mSegmentSize += mChannel.write(mWriteBuffer);
+        }
+        mWriteBuffer.clear();
+        mPendingRecords = 0;
+    }
+
+    private long readSegment(ByteBuffer buffer, Visitor visitor, long[] last) {
+        //Recorre los registros del segmento y devuelve la posicion donde termina el ultimo
+        // registro valido, o -1 si el encabezado no es valido.
+        if (buffer.remaining() < HEADER_BYTES) {
+            return -1;
+        }
+        int magic = buffer.getInt();
+        if (magic != MAGIC && magic != MAGIC_V1) {
+            return -1;
+        }
+        int crcBytes = magic == MAGIC ? CRC_BYTES : 1;
+        long lat = 0, lon = 0, time = 0;
+        int validEnd = buffer.position();
+        CRC32 crc = new CRC32();
+        while (buffer.hasRemaining()) {
+            int start = buffer.position();
+            int payloadLength = buffer.get() & 0xFF;
+            if (payloadLength == 0 || buffer.remaining() < payloadLength + crcBytes) {
+                break;
+            }
+            crc.reset();
+            for (int i = 0; i < payloadLength; i++) {
+                crc.update(buffer.get(start + 1 + i));
+            }
+            int checksumAt = start + 1 + payloadLength;
+            boolean valid = crcBytes == CRC_BYTES
+                    ? buffer.getInt(checksumAt) == (int) crc.getValue()
+                    : buffer.get(checksumAt) == (byte) crc.getValue();
+            if (!valid) {
+                break;
+            }
+            //Se decodifica en variables temporales: un registro mal formado no debe alterar
+            // los valores acumulados.
+            long nextLat = lat + unzigzag(readVarint(buffer));
+            long nextLon = lon + unzigzag(readVarint(buffer));
+            long nextTime = time + unzigzag(readVarint(buffer));
+            long accuracyDm = readVarint(buffer);
+            if (buffer.position() != checksumAt) {
+                break;
+            }
+            lat = nextLat;
+            lon = nextLon;
+            time = nextTime;
+            buffer.position(checksumAt + crcBytes);
+            validEnd = buffer.position();
+            if (visitor != null) {
+                visitor.visit(lat / FIXED_POINT, lon / FIXED_POINT, time, accuracyDm / 10f);
+            }
+        }
+        if (last != null) {
+            last[0] = lat;
+            last[1] = lon;
+            last[2] = time;
+        }
+        return validEnd;
+    }
+
+    private File[] listSegments() {
+        File[] segments = mDirectory.listFiles();
+        if (segments == null) {
+            return new File[0];
+        }
+        int count = 0;
+        for (File segment : segments) {
+            if (segment.getName().startsWith(SEGMENT_PREFIX) && segment.getName().endsWith(SEGMENT_SUFFIX)) {
+                segments[count++] = segment;
+            }
+        }
+        segments = Arrays.copyOf(segments, count);
+        //Los nombres tienen el numero con ceros a la izquierda, asi el orden es cronologico.
+        Arrays.sort(segments);
+        return segments;
+    }
+
+    private File segmentFile(int number) {
+        return new File(mDirectory, String.format(Locale.US, "%s%06d%s",
+                SEGMENT_PREFIX, number, SEGMENT_SUFFIX));
+    }
+
+    private static int segmentNumber(File segment) {
+        String name = segment.getName();
+        return Integer.parseInt(name.substring(SEGMENT_PREFIX.length(),
+                name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeVarint(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private static long readVarint(ByteBuffer buffer) {
+        long value = 0;
+        int shift = 0;
+        while (buffer.hasRemaining() && shift < 64) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+            shift += 7;
+        }
+        return value;
+    }
+}
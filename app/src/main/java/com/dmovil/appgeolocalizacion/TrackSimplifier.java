@@ -0,0 +1,136 @@
+package com.dmovil.appgeolocalizacion;
+
+public class TrackSimplifier {
+
+    //Numero maximo de puntos pendientes; acota el trabajo que se hace por cada ubicacion.
+    public static final int DEFAULT_WINDOW = 64;
+    //Tolerancia en pixeles que se usa para calcular la tolerancia en metros segun el zoom.
+    public static final float DEFAULT_PIXEL_TOLERANCE = 2f;
+
+    //Vertices ya confirmados de la linea simplificada.
+    private final TrackBuffer mVertices = new TrackBuffer();
+
+    //Puntos recibidos desde el ultimo vertice confirmado (ventana deslizante).
+    private final double[] mWindowLat;
+    private final double[] mWindowLon;
+    private int mWindowSize;
+
+    private double mToleranceMeters;
+
+    public TrackSimplifier(double toleranceMeters) {
+        this(toleranceMeters, DEFAULT_WINDOW);
+    }
+
+    public TrackSimplifier(double toleranceMeters, int window) {
+        if (window < 2) {
+            throw new IllegalArgumentException("La ventana debe tener al menos dos puntos");
+        }
+        mToleranceMeters = toleranceMeters;
+        mWindowLat = new double[window];
+        mWindowLon = new double[window];
+    }
+
+    public static double toleranceForZoom(float zoom, double latitude) {
+        //Convierte la tolerancia en pixeles a metros para el zoom actual del mapa.
+        return GeoMath.metersPerPixel(zoom, latitude) * DEFAULT_PIXEL_TOLERANCE;
+    }
+
+    public void add(double latitude, double longitude) {
+        //El primer punto siempre es un vertice.
+        if (mVertices.isEmpty()) {
+            mVertices.append(latitude, longitude, 0L, 0f, 0f);
+            return;
+        }
+
+        //Si todos los puntos pendientes quedan cerca del segmento que va del ultimo vertice al
+        // punto nuevo, el punto nuevo solo extiende la ventana. Si alguno queda lejos, el
+        // punto anterior se confirma como vertice y la ventana empieza de nuevo.
+        if (mWindowSize == mWindowLat.length || !fitsSegment(latitude, longitude)) {
+            commitLast();
+        }
+        mWindowLat[mWindowSize] = latitude;
+        mWindowLon[mWindowSize] = longitude;
+        mWindowSize++;
+    }
+
+    private boolean fitsSegment(double latitude, double longitude) {
+        //Proyeccion plana local alrededor del ultimo vertice, en metros.
+        int last = mVertices.size() - 1;
+        double anchorLat = mVertices.getLatitude(last);
+        double anchorLon = mVertices.getLongitude(last);
+        double kx = GeoMath.metersPerDegreeLongitude(anchorLat);
+        double ky = GeoMath.METERS_PER_DEGREE;
+
+        double bx = (longitude - anchorLon) * kx;
+        double by = (latitude - anchorLat) * ky;
+        double lengthSq = bx * bx + by * by;
+        double toleranceSq = mToleranceMeters * mToleranceMeters;
+
+        for (int i = 0; i < mWindowSize; i++) {
+            double px = (mWindowLon[i] - anchorLon) * kx;
+            double py = (mWindowLat[i] - anchorLat) * ky;
+            double distanceSq;
+            if (lengthSq == 0) {
+                distanceSq = px * px + py * py;
+            } else {
+                //Distancia del punto al segmento (no a la recta) para respetar los retornos.
+                double t = (px * bx + py * by) / lengthSq;
+                if (t < 0) {
+                    t = 0;
+                } else if (t > 1) {
+                    t = 1;
+                }
+                double dx = px - t * bx;
+                double dy = py - t * by;
+                distanceSq = dx * dx + dy * dy;
+            }
+            if (distanceSq > toleranceSq) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void commitLast() {
+        //Confirma el ultimo punto pendiente como vertice y vacia la ventana.
+        int last = mWindowSize - 1;
+        mVertices.append(mWindowLat[last], mWindowLon[last], 0L, 0f, 0f);
+        mWindowSize = 0;
+    }
+
+    public TrackBuffer getVertices() {
+        return mVertices;
+    }
+
+    public int getVertexCount() {
+        return mVertices.size();
+    }
+
+    public boolean hasTail() {
+        //Indica si hay un punto pendiente que se debe dibujar despues de los vertices.
+        return mWindowSize > 0;
+    }
+
+    public double getTailLatitude() {
+        return mWindowLat[mWindowSize - 1];
+    }
+
+    public double getTailLongitude() {
+        return mWindowLon[mWindowSize - 1];
+    }
+
+    public double getTolerance() {
+        return mToleranceMeters;
+    }
+
+    public void setTolerance(double toleranceMeters) {
+        //Solo afecta a los puntos nuevos; para aplicarla a todo el recorrido hay que llamar a
+        // reset() y volver a agregar los puntos.
+        mToleranceMeters = toleranceMeters;
+    }
+
+    public void reset() {
+        mVertices.clear();
+        mWindowSize = 0;
+    }
+}
@@ -0,0 +1,116 @@
+package com.dmovil.appgeolocalizacion;
+
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.app.Service;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Build;
+import android.os.IBinder;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+import androidx.core.app.NotificationCompat;
+import androidx.core.content.ContextCompat;
+
+import com.google.android.gms.location.LocationRequest;
+
+public class TrackingService extends Service {
+
+    private static final String TAG = TrackingService.class.getSimpleName();
+
+    public static final String ACTION_STOP = "com.dmovil.appgeolocalizacion.action.STOP_TRACKING";
+    private static final String CHANNEL_ID = "tracking";
+    private static final int NOTIFICATION_ID = 1;
+
+    //En segundo plano se pide una ubicación cada 5 segundos, pero el proveedor las entrega
+    // juntas como maximo cada minuto: el procesador despierta una vez por lote y no por punto.
+    public static final long BATCH_INTERVAL = 5000;
+    public static final long BATCH_MAX_WAIT_TIME = 60000;
+
+    private static volatile boolean sRunning;
+
+    public static void start(Context context) {
+        //Debe llamarse con la aplicación en primer plano (por ejemplo desde un boton).
+        ContextCompat.startForegroundService(context, new Intent(context, TrackingService.class));
+    }
+
+    public static void stop(Context context) {
+        context.stopService(new Intent(context, TrackingService.class));
+    }
+
+    public static boolean isRunning() {
+        return sRunning;
+    }
+
+    public static LocationRequest createBatchedRequest() {
+        return new LocationRequest()
+                .setInterval(BATCH_INTERVAL)
+                .setFastestInterval(BATCH_INTERVAL)
+                .setMaxWaitTime(BATCH_MAX_WAIT_TIME)
+                .setPriority(LocationRequest.PRIORITY_HIGH_ACCURACY);
+    }
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        createNotificationChannel();
+        startForeground(NOTIFICATION_ID, buildNotification());
+        sRunning = true;
+        //El repositorio guarda el recorrido aunque ninguna pantalla este observando.
+        LocationRepository.get(this).startBackgroundTracking(createBatchedRequest());
+        Log.d(TAG, "Rastreo en segundo plano iniciado.");
+    }
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        if (intent != null && ACTION_STOP.equals(intent.getAction())) {
+            stopSelf();
+        }
+        //Si el sistema detiene el proceso no se reinicia solo: desde Android 12 un servicio
+        // en primer plano no puede iniciarse desde segundo plano.
+        return START_NOT_STICKY;
+    }
+
+    @Override
+    public void onDestroy() {
+        LocationRepository.get(this).stopBackgroundTracking();
+        sRunning = false;
+        Log.d(TAG, "Rastreo en segundo plano detenido.");
+        super.onDestroy();
+    }
+
+    @Nullable
+    @Override
+    public IBinder onBind(Intent intent) {
+        return null;
+    }
+
+    private void createNotificationChannel() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            NotificationChannel channel = new NotificationChannel(CHANNEL_ID,
+                    "Rastreo de ubicación", NotificationManager.IMPORTANCE_LOW);
+            NotificationManager manager = getSystemService(NotificationManager.class);
+            manager.createNotificationChannel(channel);
+        }
+    }
+
+    private Notification buildNotification() {
+        //La notificacion abre la aplicación y tiene una accion para detener el rastreo.
+        PendingIntent openApp = PendingIntent.getActivity(this, 0,
+                new Intent(this, MainActivity.class), PendingIntent.FLAG_IMMUTABLE);
+        PendingIntent stop = PendingIntent.getService(this, 0,
+                new Intent(this, TrackingService.class).setAction(ACTION_STOP),
+                PendingIntent.FLAG_IMMUTABLE);
+        return new NotificationCompat.Builder(this, CHANNEL_ID)
+                .setSmallIcon(R.mipmap.ic_launcher)
+                .setContentTitle("Rastreo de ubicación activo")
+                .setContentText("El recorrido se sigue guardando en segundo plano")
+                .setContentIntent(openApp)
+                .addAction(0, "Detener", stop)
+                .setOngoing(true)
+                .build();
+    }
+}
@@ -0,0 +1,142 @@
+package com.dmovil.appgeolocalizacion;
+
+public class TripStats {
+
+    //Velocidad minima para considerar que hay movimiento; debajo de ella el ruido del GPS
+    // no suma distancia ni tiempo en movimiento.
+    public static final double MOVING_SPEED = 0.5;
+    //Huecos mas largos que esto (sin señal, aplicación detenida) no cuentan como movimiento.
+    public static final long MAX_GAP_MILLIS = 60000;
+    //Cambio minimo de altitud para sumarlo al desnivel; filtra el ruido de la altitud.
+    public static final double ELEVATION_THRESHOLD = 3.0;
+
+    public static final class Snapshot {
+        //Copia inmutable de las estadisticas en un momento dado.
+        public final int fixCount;
+        public final double distance;
+        public final long movingTimeMillis;
+        public final double averageSpeed;
+        public final double maxSpeed;
+        public final double elevationGain;
+        public final double south;
+        public final double west;
+        public final double north;
+        public final double east;
+
+        Snapshot(int fixCount, double distance, long movingTimeMillis, double maxSpeed,
+                 double elevationGain, double south, double west, double north, double east) {
+            this.fixCount = fixCount;
+            this.distance = distance;
+            this.movingTimeMillis = movingTimeMillis;
+            this.averageSpeed = movingTimeMillis > 0 ? distance * 1000.0 / movingTimeMillis : 0;
+            this.maxSpeed = maxSpeed;
+            this.elevationGain = elevationGain;
+            this.south = south;
+            this.west = west;
+            this.north = north;
+            this.east = east;
+        }
+
+        public StringBuilder appendTo(StringBuilder builder) {
+            //Texto para la pantalla, sin String.format.
+            builder.append("Distancia: ");
+            CoordinateFormat.append(builder, distance / 1000.0, 2).append(" km\n");
+            builder.append("En movimiento: ");
+            long seconds = movingTimeMillis / 1000;
+            builder.append(seconds / 3600).append(':');
+            appendTwoDigits(builder, (int) (seconds / 60 % 60)).append(':');
+            appendTwoDigits(builder, (int) (seconds % 60)).append('\n');
+            builder.append("Vel. promedio: ");
+            CoordinateFormat.append(builder, averageSpeed * 3.6, 1).append(" km/h\n");
+            builder.append("Vel. maxima: ");
+            CoordinateFormat.append(builder, maxSpeed * 3.6, 1).append(" km/h\n");
+            builder.append("Desnivel: ");
+            CoordinateFormat.append(builder, elevationGain, 0).append(" m");
+            return builder;
+        }
+
+        private static StringBuilder appendTwoDigits(StringBuilder builder, int value) {
+            if (value < 10) {
+                builder.append('0');
+            }
+            return builder.append(value);
+        }
+    }
+
+    private int mFixCount;
+    private double mDistance;
+    private long mMovingTimeMillis;
+    private double mMaxSpeed;
+    private double mElevationGain;
+    private double mSouth;
+    private double mWest;
+    private double mNorth;
+    private double mEast;
+
+    private double mLastLat;
+    private double mLastLon;
+    private long mLastTime;
+    private boolean mHasElevationAnchor;
+    private double mElevationAnchor;
+
+    public synchronized void add(double latitude, double longitude, long time,
+                                 boolean hasAltitude, double altitude,
+                                 boolean hasSpeed, float speed) {
+        //Actualiza las estadisticas con una ubicación en tiempo constante, sin guardar el
+        // historial: solo se conserva la ubicación anterior.
+        if (mFixCount == 0) {
+            mSouth = mNorth = latitude;
+            mWest = mEast = longitude;
+        } else {
+            mSouth = Math.min(mSouth, latitude);
+            mNorth = Math.max(mNorth, latitude);
+            mWest = Math.min(mWest, longitude);
+            mEast = Math.max(mEast, longitude);
+
+            long elapsed = time - mLastTime;
+            if (elapsed <= 0) {
+                //Ubicación repetida o fuera de orden.
+                return;
+            }
+            double meters = GeoMath.distance(mLastLat, mLastLon, latitude, longitude);
+            double segmentSpeed = meters * 1000.0 / elapsed;
+            if (elapsed <= MAX_GAP_MILLIS && segmentSpeed >= MOVING_SPEED) {
+                mDistance += meters;
+                mMovingTimeMillis += elapsed;
+                mMaxSpeed = Math.max(mMaxSpeed, hasSpeed ? speed : segmentSpeed);
+            }
+        }
+        if (hasAltitude) {
+            //El desnivel solo suma subidas mayores al umbral; las bajadas mueven la referencia.
+            if (!mHasElevationAnchor) {
+                mHasElevationAnchor = true;
+                mElevationAnchor = altitude;
+            } else if (altitude > mElevationAnchor + ELEVATION_THRESHOLD) {
+                mElevationGain += altitude - mElevationAnchor;
+                mElevationAnchor = altitude;
+            } else if (altitude < mElevationAnchor - ELEVATION_THRESHOLD) {
+                mElevationAnchor = altitude;
+            }
+        }
+        mFixCount++;
+        mLastLat = latitude;
+        mLastLon = longitude;
+        mLastTime = time;
+    }
+
+    public synchronized Snapshot snapshot() {
+        //Se puede llamar desde cualquier hilo mientras siguen llegando ubicaciones.
+        return new Snapshot(mFixCount, mDistance, mMovingTimeMillis, mMaxSpeed, mElevationGain,
+                mSouth, mWest, mNorth, mEast);
+    }
+
+    public synchronized void reset() {
+        //Empieza un viaje nuevo; la siguiente ubicación es el punto de partida.
+        mFixCount = 0;
+        mDistance = 0;
+        mMovingTimeMillis = 0;
+        mMaxSpeed = 0;
+        mElevationGain = 0;
+        mHasElevationAnchor = false;
+    }
+}
@@ -0,0 +1,30 @@
+package com.dmovil.appgeolocalizacion;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AccuracyGateTest {
+
+    private final Fix mFix = new Fix();
+
+    @Test
+    public void rejectsInaccurateFixes() {
+        AccuracyGate gate = new AccuracyGate(30f);
+
+        assertTrue(gate.accept(mFix.set(19.43, -99.13, 0, 10f, false, 0f)));
+        assertTrue(gate.accept(mFix.set(19.43, -99.13, 1000, 30f, false, 0f)));
+        assertFalse(gate.accept(mFix.set(19.43, -99.13, 2000, 30.5f, false, 0f)));
+        assertFalse(gate.accept(mFix.set(19.43, -99.13, 3000, 800f, false, 0f)));
+    }
+
+    @Test
+    public void unknownAccuracyIsAssumed() {
+        AccuracyGate gate = new AccuracyGate(30f, 40f);
+
+        assertTrue(gate.accept(mFix.set(19.43, -99.13, 0, 0f, false, 0f)));
+        assertEquals(40f, mFix.accuracy, 0f);
+    }
+}
@@ -0,0 +1,67 @@
+package com.dmovil.appgeolocalizacion;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FilterChainTest {
+
+    private final Fix mFix = new Fix();
+
+    @Test
+    public void stopsAtFirstRejection() {
+        CountingFilter last = new CountingFilter();
+        FilterChain chain = new FilterChain(new AccuracyGate(30f), last);
+
+        assertTrue(chain.accept(mFix.set(19.43, -99.13, 0, 10f, false, 0f)));
+        assertFalse(chain.accept(mFix.set(19.43, -99.13, 1000, 100f, false, 0f)));
+        assertTrue(chain.accept(mFix.set(19.43, -99.13, 2000, 10f, false, 0f)));
+
+        assertEquals(2, last.accepted);
+        assertEquals(2, chain.getAcceptedCount());
+        assertEquals(1, chain.getRejectedCount());
+    }
+
+    @Test
+    public void resetReachesEveryFilter() {
+        CountingFilter first = new CountingFilter();
+        CountingFilter second = new CountingFilter();
+        FilterChain chain = new FilterChain(first, second);
+
+        chain.reset();
+
+        assertEquals(1, first.resets);
+        assertEquals(1, second.resets);
+    }
+
+    @Test
+    public void rejectedJumpDoesNotReachKalman() {
+        FilterChain chain = new FilterChain(new AccuracyGate(30f), new SpeedGate(30f),
+                new KalmanFilter(3.0));
+
+        assertTrue(chain.accept(mFix.set(19.43, -99.13, 0, 5f, false, 0f)));
+        assertFalse(chain.accept(mFix.set(20.43, -99.13, 1000, 5f, false, 0f)));
+        assertTrue(chain.accept(mFix.set(19.43, -99.13, 2000, 5f, false, 0f)));
+
+        //El salto no movio el filtro de Kalman.
+        assertEquals(19.43, mFix.latitude, 1e-6);
+    }
+
+    private static final class CountingFilter implements FixFilter {
+        int accepted;
+        int resets;
+
+        @Override
+        public boolean accept(Fix fix) {
+            accepted++;
+            return true;
+        }
+
+        @Override
+        public void reset() {
+            resets++;
+        }
+    }
+}
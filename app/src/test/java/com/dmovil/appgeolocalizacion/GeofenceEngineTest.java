@@ -0,0 +1,126 @@
+package com.dmovil.appgeolocalizacion;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class GeofenceEngineTest {
+
+    private static final long DWELL = 60000;
+
+    private final List<String> mEvents = new ArrayList<>();
+    private GeofenceEngine mEngine;
+
+    @Before
+    public void setUp() {
+        mEngine = new GeofenceEngine(new GeofenceEngine.Listener() {
+            @Override
+            public void onGeofenceEvent(Geofence geofence, int transition, long time) {
+                mEvents.add(geofence.getId() + ":" + transition + "@" + time);
+            }
+        }, GeofenceEngine.DEFAULT_CELLS_PER_DEGREE, DWELL);
+    }
+
+    @Test
+    public void enterAndExitCircle() {
+        mEngine.load(Collections.singletonList(Geofence.circle("zocalo", 19.4326, -99.1332, 200)));
+
+        mEngine.evaluate(19.4400, -99.1332, 0);
+        mEngine.evaluate(19.4327, -99.1333, 1000);
+        mEngine.evaluate(19.4328, -99.1331, 2000);
+        mEngine.evaluate(19.4400, -99.1332, 3000);
+
+        assertEquals(Arrays.asList("zocalo:" + GeofenceEngine.TRANSITION_ENTER + "@1000",
+                "zocalo:" + GeofenceEngine.TRANSITION_EXIT + "@3000"), mEvents);
+    }
+
+    @Test
+    public void dwellIsReportedOnce() {
+        mEngine.load(Collections.singletonList(Geofence.circle("zocalo", 19.4326, -99.1332, 200)));
+
+        mEngine.evaluate(19.4326, -99.1332, 0);
+        mEngine.evaluate(19.4326, -99.1332, DWELL - 1);
+        mEngine.evaluate(19.4326, -99.1332, DWELL);
+        mEngine.evaluate(19.4326, -99.1332, 2 * DWELL);
+
+        assertEquals(Arrays.asList("zocalo:" + GeofenceEngine.TRANSITION_ENTER + "@0",
+                "zocalo:" + GeofenceEngine.TRANSITION_DWELL + "@" + DWELL), mEvents);
+    }
+
+    @Test
+    public void fenceAcrossCellsEntersOnce() {
+        //Circulo de 1.5 km centrado en el borde entre dos celdas de 0.01 grados.
+        mEngine.load(Collections.singletonList(Geofence.circle("borde", 19.43, -99.13, 1500)));
+
+        mEngine.evaluate(19.4295, -99.13, 0);
+        mEngine.evaluate(19.4305, -99.13, 1000);
+        mEngine.evaluate(19.4295, -99.1305, 2000);
+
+        assertEquals(Collections.singletonList("borde:" + GeofenceEngine.TRANSITION_ENTER + "@0"),
+                mEvents);
+    }
+
+    @Test
+    public void oversizedFenceIsChecked() {
+        //Un poligono de varios grados ocupa muchas mas de MAX_CELLS_PER_FENCE celdas y queda
+        // fuera de la cuadricula, pero igual se evalua.
+        Geofence state = Geofence.polygon("estado",
+                new double[]{18, 18, 21, 21}, new double[]{-101, -98, -98, -101});
+        Geofence small = Geofence.circle("zocalo", 19.4326, -99.1332, 200);
+        mEngine.load(Arrays.asList(state, small));
+
+        mEngine.evaluate(19.4326, -99.1332, 0);
+        mEngine.evaluate(20.5, -100.5, 1000);
+        mEngine.evaluate(25.68, -100.31, 2000);
+
+        //Primero se revisa la celda de la ubicación y despues las geocercas grandes.
+        assertEquals(Arrays.asList(
+                "zocalo:" + GeofenceEngine.TRANSITION_ENTER + "@0",
+                "estado:" + GeofenceEngine.TRANSITION_ENTER + "@0",
+                "zocalo:" + GeofenceEngine.TRANSITION_EXIT + "@1000",
+                "estado:" + GeofenceEngine.TRANSITION_EXIT + "@2000"), mEvents);
+    }
+
+    @Test
+    public void removedFenceExits() {
+        mEngine.load(Collections.singletonList(Geofence.circle("zocalo", 19.4326, -99.1332, 200)));
+        mEngine.evaluate(19.4326, -99.1332, 0);
+
+        mEngine.update(Collections.<Geofence>emptyList(), Collections.singletonList("zocalo"));
+        mEngine.evaluate(19.4326, -99.1332, 1000);
+
+        assertEquals(0, mEngine.size());
+        assertEquals(Arrays.asList("zocalo:" + GeofenceEngine.TRANSITION_ENTER + "@0",
+                "zocalo:" + GeofenceEngine.TRANSITION_EXIT + "@1000"), mEvents);
+    }
+
+    @Test
+    public void readSkipsMalformedLines() throws IOException {
+        String text = "zocalo,circle,19.4326,-99.1332,200\n"
+                + "malo,circle,19.4x,-99.1332,200\n"
+                + "corto,circle,19.4326,-99.1332\n"
+                + "dos,polygon,19 -99;19.1 -99\n"
+                + "incompleto,polygon,19 -99;19.1;19.1 -99.1\n"
+                + "\n"
+                + "triangulo,polygon,19 -99; 19.1 -99 ;19.1 -99.1\n"
+                + "otro,square,19,-99,10\n";
+
+        List<Geofence> geofences = GeofenceEngine.readGeofences(
+                new BufferedReader(new StringReader(text)));
+
+        assertEquals(2, geofences.size());
+        assertEquals("zocalo", geofences.get(0).getId());
+        assertEquals("triangulo", geofences.get(1).getId());
+        assertTrue(geofences.get(1).contains(19.07, -99.02));
+    }
+}
@@ -0,0 +1,78 @@
+package com.dmovil.appgeolocalizacion;
+
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class IsoTimeTest {
+
+    @Test
+    public void parsesUtc() {
+        assertEquals(1634560496000L, IsoTime.parse("2021-10-18T12:34:56Z"));
+        assertEquals(0L, IsoTime.parse("1970-01-01T00:00:00Z"));
+        //Sin zona se toma como UTC.
+        assertEquals(1634560496000L, IsoTime.parse("2021-10-18 12:34:56"));
+    }
+
+    @Test
+    public void parsesMilliseconds() {
+        assertEquals(1634560496123L, IsoTime.parse("2021-10-18T12:34:56.123Z"));
+        assertEquals(1634560496500L, IsoTime.parse("2021-10-18T12:34:56.5Z"));
+        //Los digitos despues de los milisegundos se ignoran.
+        assertEquals(1634560496123L, IsoTime.parse("2021-10-18T12:34:56.123456Z"));
+    }
+
+    @Test
+    public void parsesOffsets() {
+        assertEquals(1634560496000L, IsoTime.parse("2021-10-18T14:34:56+02:00"));
+        assertEquals(1634560496000L, IsoTime.parse("2021-10-18T07:04:56-05:30"));
+    }
+
+    @Test
+    public void appendsUtc() {
+        assertEquals("2021-10-18T12:34:56Z",
+                IsoTime.append(new StringBuilder(), 1634560496000L).toString());
+        assertEquals("2021-10-18T12:34:56.007Z",
+                IsoTime.append(new StringBuilder(), 1634560496007L).toString());
+        assertEquals("1969-12-31T23:59:59.999Z",
+                IsoTime.append(new StringBuilder(), -1L).toString());
+        assertEquals("2000-02-29T00:00:00Z",
+                IsoTime.append(new StringBuilder(), 951782400000L).toString());
+    }
+
+    @Test
+    public void roundTripsAgainstJavaTime() {
+        //Fechas al azar entre 1900 y 2100, con y sin milisegundos.
+        Random random = new Random(18);
+        long min = Instant.parse("1900-01-01T00:00:00Z").toEpochMilli();
+        long max = Instant.parse("2100-01-01T00:00:00Z").toEpochMilli();
+        for (int i = 0; i < 10000; i++) {
+            long millis = min + (long) (random.nextDouble() * (max - min));
+            if (i % 2 == 0) {
+                millis -= Math.floorMod(millis, 1000L);
+            }
+            String text = IsoTime.append(new StringBuilder(), millis).toString();
+
+            assertEquals(Instant.ofEpochMilli(millis).toString(), text);
+            assertEquals(millis, IsoTime.parse(text));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsMalformedDate() {
+        IsoTime.parse("2021-10-18T12:3x:56Z");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnknownZone() {
+        IsoTime.parse("2021-10-18T12:34:56 CET");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsTruncatedOffset() {
+        IsoTime.parse("2021-10-18T12:34:56+02");
+    }
+}
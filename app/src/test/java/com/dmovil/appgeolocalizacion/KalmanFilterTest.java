@@ -0,0 +1,62 @@
+package com.dmovil.appgeolocalizacion;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class KalmanFilterTest {
+
+    private final Fix mFix = new Fix();
+
+    @Test
+    public void firstFixPassesUnchanged() {
+        KalmanFilter filter = new KalmanFilter(3.0);
+
+        assertTrue(filter.accept(mFix.set(19.43, -99.13, 0, 10f, false, 0f)));
+
+        assertEquals(19.43, mFix.latitude, 0);
+        assertEquals(-99.13, mFix.longitude, 0);
+        assertEquals(10f, mFix.accuracy, 1e-6f);
+    }
+
+    @Test
+    public void smoothsNoiseOnStraightLine() {
+        //Recorrido hacia el norte a 10 m/s con ruido de 10 m; el filtro debe quedar mas cerca
+        // de la posicion real que las ubicaciones sin filtrar.
+        KalmanFilter filter = new KalmanFilter(1.0);
+        Random random = new Random(7);
+        double rawError = 0;
+        double filteredError = 0;
+        int counted = 0;
+        for (int i = 0; i < 120; i++) {
+            double lat = 19.43 + i * 10 / GeoMath.METERS_PER_DEGREE;
+            double noisyLat = lat + random.nextGaussian() * 10 / GeoMath.METERS_PER_DEGREE;
+            double noisyLon = -99.13 + random.nextGaussian() * 10
+                    / GeoMath.metersPerDegreeLongitude(19.43);
+            filter.accept(mFix.set(noisyLat, noisyLon, i * 1000L, 10f, false, 0f));
+            if (i >= 20) {
+                rawError += GeoMath.distance(lat, -99.13, noisyLat, noisyLon);
+                filteredError += GeoMath.distance(lat, -99.13, mFix.latitude, mFix.longitude);
+                counted++;
+            }
+        }
+
+        assertTrue(filteredError / counted < 0.7 * rawError / counted);
+        assertTrue(mFix.accuracy < 10f);
+    }
+
+    @Test
+    public void restartsAfterGap() {
+        KalmanFilter filter = new KalmanFilter(3.0);
+        filter.accept(mFix.set(19.43, -99.13, 0, 10f, false, 0f));
+        filter.accept(mFix.set(19.43, -99.13, 1000, 10f, false, 0f));
+
+        filter.accept(mFix.set(19.50, -99.20, 1000 + KalmanFilter.MAX_GAP_MILLIS + 1, 10f, false, 0f));
+
+        assertEquals(19.50, mFix.latitude, 0);
+        assertEquals(-99.20, mFix.longitude, 0);
+    }
+}
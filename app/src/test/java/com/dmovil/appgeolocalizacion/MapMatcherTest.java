@@ -0,0 +1,128 @@
+package com.dmovil.appgeolocalizacion;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MapMatcherTest {
+
+    private static final double LAT = 19.43;
+    private static final double LON = -99.13;
+    //Calle A sobre LAT y calle B, paralela y sin conexion, 25 m al norte.
+    private static final double B_OFFSET = 25 / GeoMath.METERS_PER_DEGREE;
+    private static final double METER_LON = 1 / GeoMath.metersPerDegreeLongitude(LAT);
+
+    private static RoadNetwork parallelRoads() throws IOException {
+        StringBuilder csv = new StringBuilder();
+        csv.append("a,").append(LAT).append(' ').append(LON).append(';')
+                .append(LAT).append(' ').append(LON + 2000 * METER_LON).append('\n');
+        csv.append("b,").append(LAT + B_OFFSET).append(' ').append(LON).append(';')
+                .append(LAT + B_OFFSET).append(' ').append(LON + 2000 * METER_LON).append('\n');
+        return RoadNetwork.read(new BufferedReader(new StringReader(csv.toString())));
+    }
+
+    @Test
+    public void staysOnTheRoadThatIsReachable() throws IOException {
+        MapMatcher matcher = new MapMatcher(parallelRoads());
+        TrackBuffer matched = new TrackBuffer();
+        Random random = new Random(7);
+        for (int i = 0; i < 100; i++) {
+            //Ubicaciones sobre A con ruido; cada quinta se desvia hacia B.
+            double north = random.nextGaussian() * 4 + (i % 5 == 4 ? 16 : 0);
+            double latitude = LAT + north / GeoMath.METERS_PER_DEGREE;
+            double longitude = LON + (100 + i * 15) * METER_LON;
+            assertTrue(matcher.match(latitude, longitude, 1000L * i, 10f));
+            append(matcher.getCommitted(), matched);
+        }
+        matcher.flush();
+        append(matcher.getCommitted(), matched);
+
+        assertEquals(100, matched.size());
+        for (int i = 0; i < matched.size(); i++) {
+            assertEquals("punto " + i, LAT, matched.getLatitude(i), 1e-7);
+            assertEquals(1000L * i, matched.getTime(i));
+        }
+    }
+
+    @Test
+    public void followsATurnOntoAConnectedRoad() throws IOException {
+        //Calle este-oeste y otra hacia el norte desde su extremo.
+        double cornerLon = LON + 500 * METER_LON;
+        double northLat = LAT + 500 / GeoMath.METERS_PER_DEGREE;
+        RoadNetwork network = RoadNetwork.read(new BufferedReader(new StringReader(
+                "a," + LAT + " " + LON + ";" + LAT + " " + cornerLon + "\n"
+                        + "b," + LAT + " " + cornerLon + ";" + northLat + " " + cornerLon + "\n")));
+        MapMatcher matcher = new MapMatcher(network);
+        TrackBuffer matched = new TrackBuffer();
+        for (int i = 0; i < 60; i++) {
+            double along = i * 15;
+            double latitude = along <= 500 ? LAT : LAT + (along - 500) / GeoMath.METERS_PER_DEGREE;
+            double longitude = along <= 500 ? LON + along * METER_LON : cornerLon;
+            //Desvio fijo de 6 m hacia el noreste.
+            matcher.match(latitude + 6 / GeoMath.METERS_PER_DEGREE, longitude + 6 * METER_LON,
+                    1000L * i, 10f);
+            append(matcher.getCommitted(), matched);
+        }
+        matcher.flush();
+        append(matcher.getCommitted(), matched);
+
+        assertEquals(60, matched.size());
+        for (int i = 0; i < matched.size(); i++) {
+            boolean onA = Math.abs(matched.getLatitude(i) - LAT) < 1e-7;
+            boolean onB = Math.abs(matched.getLongitude(i) - cornerLon) < 1e-7;
+            assertTrue("punto " + i, onA || onB);
+        }
+        assertTrue(Math.abs(matched.getLongitude(59) - cornerLon) < 1e-7);
+    }
+
+    @Test
+    public void commitsWithALagOfTheWindow() throws IOException {
+        MapMatcher matcher = new MapMatcher(parallelRoads());
+        for (int i = 0; i < MapMatcher.WINDOW; i++) {
+            assertTrue(matcher.match(LAT, LON + (100 + i * 10) * METER_LON, 1000L * i, 5f));
+            assertEquals(0, matcher.getCommitted().size());
+            //La posicion actual ya esta ajustada aunque no este confirmada.
+            assertEquals(LAT, matcher.getMatchedLatitude(), 1e-7);
+        }
+        matcher.match(LAT, LON + 200 * METER_LON, 1000L * MapMatcher.WINDOW, 5f);
+        assertEquals(1, matcher.getCommitted().size());
+        assertEquals(0L, matcher.getCommitted().getTime(0));
+    }
+
+    @Test
+    public void fixAwayFromRoadsIsNotMatchedAndFlushesTheWindow() throws IOException {
+        MapMatcher matcher = new MapMatcher(parallelRoads());
+        matcher.match(LAT, LON + 100 * METER_LON, 0, 5f);
+        matcher.match(LAT, LON + 110 * METER_LON, 1000, 5f);
+
+        assertFalse(matcher.match(LAT + 0.01, LON, 2000, 5f));
+        assertFalse(matcher.isMatched());
+        assertEquals(2, matcher.getCommitted().size());
+        assertEquals(LAT + 0.01, matcher.getMatchedLatitude(), 0);
+    }
+
+    @Test
+    public void gapStartsANewChain() throws IOException {
+        MapMatcher matcher = new MapMatcher(parallelRoads());
+        matcher.match(LAT, LON + 100 * METER_LON, 0, 5f);
+        matcher.match(LAT + B_OFFSET, LON + 1500 * METER_LON,
+                MapMatcher.MAX_GAP_MILLIS + 1000, 5f);
+
+        assertEquals(1, matcher.getCommitted().size());
+        assertEquals(LAT + B_OFFSET, matcher.getMatchedLatitude(), 1e-7);
+    }
+
+    private static void append(TrackBuffer from, TrackBuffer to) {
+        for (int i = 0; i < from.size(); i++) {
+            to.append(from.getLatitude(i), from.getLongitude(i), from.getTime(i),
+                    from.getAccuracy(i), from.getSpeed(i));
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.dmovil.appgeolocalizacion;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PoiClustererTest {
+
+    //Zoom 10: celdas de 96 px, unos 0.13 grados.
+    private static final float ZOOM = 10f;
+
+    @Test
+    public void edgeClusterCountsTheWholeCell() {
+        double cell = PoiClusterer.cellDegrees(ZOOM);
+        double south = Math.floor((19.4 + 90) / cell) * cell - 90;
+        double west = Math.floor((-99.2 + 180) / cell) * cell - 180;
+        //Tres puntos en la misma celda, en lados opuestos.
+        PoiClusterer clusterer = new PoiClusterer(
+                new double[]{south + cell * 0.1, south + cell * 0.5, south + cell * 0.9},
+                new double[]{west + cell * 0.1, west + cell * 0.5, west + cell * 0.9},
+                new String[]{"a", "b", "c"});
+
+        //El area solo cubre la esquina suroeste de la celda.
+        List<PoiClusterer.Cluster> partial = clusterer.cluster(ZOOM, south, west,
+                south + cell * 0.2, west + cell * 0.2);
+        List<PoiClusterer.Cluster> whole = clusterer.cluster(ZOOM, south - cell, west - cell,
+                south + 2 * cell, west + 2 * cell);
+
+        assertEquals(1, partial.size());
+        assertEquals(3, partial.get(0).count);
+        assertEquals(south + cell * 0.5, partial.get(0).latitude, 1e-9);
+        assertEquals(1, whole.size());
+        assertEquals(partial.get(0).key, whole.get(0).key);
+        assertNull(whole.get(0).name);
+    }
+
+    @Test
+    public void onlyVisibleCellsAreReturned() {
+        PoiClusterer clusterer = new PoiClusterer(
+                new double[]{19.43, 20.67, 25.68},
+                new double[]{-99.13, -103.35, -100.31},
+                new String[]{"CDMX", "Guadalajara", "Monterrey"});
+
+        List<PoiClusterer.Cluster> clusters = clusterer.cluster(ZOOM, 19, -100, 20, -99);
+
+        assertEquals(1, clusters.size());
+        assertEquals(1, clusters.get(0).count);
+        assertEquals("CDMX", clusters.get(0).name);
+    }
+
+    @Test
+    public void keysAreStableWhenPanning() {
+        PoiClusterer clusterer = new PoiClusterer(
+                new double[]{19.43, 19.44},
+                new double[]{-99.13, -99.10},
+                new String[]{"a", "b"});
+
+        List<PoiClusterer.Cluster> first = clusterer.cluster(ZOOM, 19, -100, 20, -99);
+        List<PoiClusterer.Cluster> moved = clusterer.cluster(ZOOM, 19.3, -99.5, 20.3, -98.5);
+
+        assertEquals(first.size(), moved.size());
+        for (int i = 0; i < first.size(); i++) {
+            assertEquals(first.get(i).key, moved.get(i).key);
+            assertEquals(first.get(i).count, moved.get(i).count);
+        }
+    }
+
+    @Test
+    public void lowerZoomMergesCells() {
+        PoiClusterer clusterer = new PoiClusterer(
+                new double[]{19.43, 19.60, 19.80},
+                new double[]{-99.13, -99.00, -98.80},
+                new String[]{"a", "b", "c"});
+
+        assertEquals(3, clusterer.cluster(12f, 19, -100, 20, -98).size());
+        List<PoiClusterer.Cluster> far = clusterer.cluster(3f, 19, -100, 20, -98);
+        assertEquals(1, far.size());
+        assertEquals(3, far.get(0).count);
+    }
+
+    @Test
+    public void areaAcrossTheAntimeridian() {
+        PoiClusterer clusterer = new PoiClusterer(
+                new double[]{-17.7, -17.7, -17.7},
+                new double[]{179.9, -179.9, 0},
+                new String[]{"oeste", "este", "lejos"});
+
+        List<PoiClusterer.Cluster> clusters = clusterer.cluster(ZOOM, -18, 179.5, -17, -179.5);
+
+        assertEquals(2, clusters.size());
+        //Longitud 180 cae en la ultima columna, no en la fila siguiente.
+        PoiClusterer edge = new PoiClusterer(new double[]{0}, new double[]{180},
+                new String[]{"borde"});
+        assertEquals(1, edge.cluster(ZOOM, -1, 179, 1, 180).size());
+    }
+
+    @Test
+    public void readSkipsInvalidLines() throws IOException {
+        PoiClusterer clusterer = PoiClusterer.read(new BufferedReader(new StringReader(
+                "latitud,longitud,nombre\n19.43,-99.13,Zocalo, CDMX\nx,y,z\n19.44\n")));
+
+        assertEquals(1, clusterer.size());
+        List<PoiClusterer.Cluster> clusters = clusterer.cluster(ZOOM, 19, -100, 20, -99);
+        assertTrue(clusters.size() == 1 && "Zocalo, CDMX".equals(clusters.get(0).name));
+    }
+}
@@ -0,0 +1,178 @@
+package com.dmovil.appgeolocalizacion;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ReplayEngineTest {
+
+    //Margen para la planificacion de hilos; las esperas nunca deben ser mas cortas.
+    private static final long SLACK_MILLIS = 500;
+
+    @Test
+    public void maxSpeedDeliversEverythingWithoutWaiting() throws Exception {
+        TrackBuffer track = nmeaTrack();
+        Recorder recorder = new Recorder();
+        int delivered = new ReplayEngine(track, ReplayEngine.AS_FAST_AS_POSSIBLE).run(recorder);
+
+        assertEquals(track.size(), delivered);
+        assertEquals(track.size(), recorder.size());
+        for (int i = 0; i < track.size(); i++) {
+            assertEquals(track.getLatitude(i), recorder.latitudes.get(i), 0);
+            assertEquals(track.getLongitude(i), recorder.longitudes.get(i), 0);
+            assertEquals(track.getSpeed(i), recorder.speeds.get(i), 0);
+        }
+        //Los tiempos se trasladan al reloj actual conservando la separacion original.
+        long now = System.currentTimeMillis();
+        assertTrue(Math.abs(now - recorder.times.get(0)) < SLACK_MILLIS);
+        assertEquals(500L, recorder.times.get(1) - recorder.times.get(0));
+        assertEquals(2000L, recorder.times.get(2) - recorder.times.get(0));
+        assertTrue(recorder.elapsedMillis(recorder.size() - 1) < SLACK_MILLIS);
+    }
+
+    @Test
+    public void realTimeKeepsTheRecordedSpacing() throws Exception {
+        //Puntos cada 150 ms para que la prueba sea corta.
+        TrackBuffer track = spacedTrack(150, 4);
+        Recorder recorder = new Recorder();
+        new ReplayEngine(track, 1f).run(recorder);
+
+        assertEquals(4, recorder.size());
+        for (int i = 0; i < 4; i++) {
+            assertOnTime(recorder, i, i * 150L);
+            assertEquals(i * 150L, recorder.times.get(i) - recorder.times.get(0));
+        }
+    }
+
+    @Test
+    public void fasterSpeedDividesTheWaits() throws Exception {
+        //Con 10x, un segundo grabado se reproduce en 100 ms.
+        TrackBuffer track = spacedTrack(1000, 4);
+        Recorder recorder = new Recorder();
+        new ReplayEngine(track, 10f).run(recorder);
+
+        assertEquals(4, recorder.size());
+        for (int i = 0; i < 4; i++) {
+            assertOnTime(recorder, i, i * 100L);
+            assertEquals(i * 1000L, recorder.times.get(i) - recorder.times.get(0));
+        }
+    }
+
+    @Test
+    public void gpxPointsWithoutTimeGoWithThePreviousPoint() throws Exception {
+        TrackBuffer track = new TrackBuffer();
+        TraceReader.readGpx(new BufferedReader(new StringReader(TraceReaderTest.GPX)), track);
+        //El primer punto (wpt) no tiene hora; se usa el recorrido a partir del primer trkpt.
+        TrackBuffer timed = new TrackBuffer();
+        for (int i = 1; i < track.size(); i++) {
+            timed.append(track.getLatitude(i), track.getLongitude(i), track.getTime(i), 0f, 0f);
+        }
+        Recorder recorder = new Recorder();
+        new ReplayEngine(timed, 4f).run(recorder);
+
+        assertEquals(4, recorder.size());
+        long[] offsets = {0, 500, 500, 2000};
+        for (int i = 0; i < offsets.length; i++) {
+            assertEquals(offsets[i], recorder.times.get(i) - recorder.times.get(0));
+            assertOnTime(recorder, i, offsets[i] / 4);
+        }
+    }
+
+    @Test
+    public void trackWithoutTimesUsesOneSecondSpacing() throws Exception {
+        TrackBuffer track = new TrackBuffer();
+        for (int i = 0; i < 3; i++) {
+            track.append(19.43 + i * 1e-4, -99.13, 0L, 0f, 0f);
+        }
+        Recorder recorder = new Recorder();
+        new ReplayEngine(track, ReplayEngine.AS_FAST_AS_POSSIBLE).run(recorder);
+
+        assertEquals(3, recorder.size());
+        assertEquals(1000L, recorder.times.get(1) - recorder.times.get(0));
+        assertEquals(2000L, recorder.times.get(2) - recorder.times.get(0));
+    }
+
+    @Test
+    public void cancelStopsDelivery() throws Exception {
+        TrackBuffer track = spacedTrack(1000, 10);
+        final ReplayEngine replay = new ReplayEngine(track, ReplayEngine.AS_FAST_AS_POSSIBLE);
+        Recorder recorder = new Recorder() {
+            @Override
+            public void onFix(double latitude, double longitude, long time, float accuracy,
+                              float speed) {
+                super.onFix(latitude, longitude, time, accuracy, speed);
+                if (size() == 3) {
+                    replay.cancel();
+                }
+            }
+        };
+
+        assertEquals(3, replay.run(recorder));
+        assertTrue(replay.isCancelled());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeSpeedIsRejected() {
+        new ReplayEngine(new TrackBuffer(), -1f);
+    }
+
+    private static TrackBuffer nmeaTrack() throws IOException {
+        TrackBuffer track = new TrackBuffer();
+        TraceReader.readNmea(new BufferedReader(new StringReader(TraceReaderTest.NMEA)), track);
+        //Sin la ultima sentencia, que es de otra fecha.
+        TrackBuffer sameDay = new TrackBuffer();
+        for (int i = 0; i < 3; i++) {
+            sameDay.append(track.getLatitude(i), track.getLongitude(i), track.getTime(i),
+                    track.getAccuracy(i), track.getSpeed(i));
+        }
+        return sameDay;
+    }
+
+    private static TrackBuffer spacedTrack(long intervalMillis, int count) {
+        TrackBuffer track = new TrackBuffer();
+        for (int i = 0; i < count; i++) {
+            track.append(19.43 + i * 1e-4, -99.13, 1634552100000L + i * intervalMillis, 5f, 1f);
+        }
+        return track;
+    }
+
+    private static void assertOnTime(Recorder recorder, int index, long expectedMillis) {
+        long elapsed = recorder.elapsedMillis(index);
+        assertTrue("punto " + index + " a los " + elapsed + " ms, esperado " + expectedMillis,
+                elapsed >= expectedMillis && elapsed < expectedMillis + SLACK_MILLIS);
+    }
+
+    private static class Recorder implements ReplayEngine.Sink {
+        final long startNanos = System.nanoTime();
+        final List<Double> latitudes = new ArrayList<>();
+        final List<Double> longitudes = new ArrayList<>();
+        final List<Long> times = new ArrayList<>();
+        final List<Float> speeds = new ArrayList<>();
+        final List<Long> arrivals = new ArrayList<>();
+
+        @Override
+        public void onFix(double latitude, double longitude, long time, float accuracy,
+                          float speed) {
+            arrivals.add(System.nanoTime());
+            latitudes.add(latitude);
+            longitudes.add(longitude);
+            times.add(time);
+            speeds.add(speed);
+        }
+
+        int size() {
+            return times.size();
+        }
+
+        long elapsedMillis(int index) {
+            return (arrivals.get(index) - startNanos) / 1000000L;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.dmovil.appgeolocalizacion;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SpeedGateTest {
+
+    //Grados de latitud por cada 100 m.
+    private static final double HUNDRED_METERS = 100 / GeoMath.METERS_PER_DEGREE;
+
+    private final Fix mFix = new Fix();
+    private final SpeedGate mGate = new SpeedGate(30f);
+
+    @Test
+    public void rejectsImpossibleJumps() {
+        assertTrue(mGate.accept(mFix.set(19.43, -99.13, 0, 5f, false, 0f)));
+        //100 m en 10 s es posible; 10 km en 10 s no.
+        assertTrue(mGate.accept(mFix.set(19.43 + HUNDRED_METERS, -99.13, 10000, 5f, false, 0f)));
+        assertFalse(mGate.accept(mFix.set(19.43 + 100 * HUNDRED_METERS, -99.13, 20000, 5f, false, 0f)));
+        //La referencia sigue siendo la ultima ubicación aceptada.
+        assertTrue(mGate.accept(mFix.set(19.43 + 2 * HUNDRED_METERS, -99.13, 30000, 5f, false, 0f)));
+    }
+
+    @Test
+    public void rejectsRepeatedAndOutOfOrderFixes() {
+        assertTrue(mGate.accept(mFix.set(19.43, -99.13, 10000, 5f, false, 0f)));
+        assertFalse(mGate.accept(mFix.set(19.43, -99.13, 10000, 5f, false, 0f)));
+        assertFalse(mGate.accept(mFix.set(19.43, -99.13, 9000, 5f, false, 0f)));
+    }
+
+    @Test
+    public void accuracyIsDiscounted() {
+        assertTrue(mGate.accept(mFix.set(19.43, -99.13, 0, 5f, false, 0f)));
+        //100 m en 1 s, pero con 80 m de precision solo cuentan 20 m.
+        assertTrue(mGate.accept(mFix.set(19.43 + HUNDRED_METERS, -99.13, 1000, 80f, false, 0f)));
+    }
+
+    @Test
+    public void reanchorsAfterConsecutiveRejections() {
+        //La primera ubicación es un salto; las siguientes son las correctas.
+        double far = 19.43 + 100 * HUNDRED_METERS;
+        assertTrue(mGate.accept(mFix.set(far, -99.13, 0, 5f, false, 0f)));
+        long time = 0;
+        for (int i = 1; i < SpeedGate.MAX_CONSECUTIVE_REJECTIONS; i++) {
+            time += 1000;
+            assertFalse(mGate.accept(mFix.set(19.43, -99.13, time, 5f, false, 0f)));
+        }
+        time += 1000;
+        assertTrue(mGate.accept(mFix.set(19.43, -99.13, time, 5f, false, 0f)));
+        time += 1000;
+        assertTrue(mGate.accept(mFix.set(19.43, -99.13, time, 5f, false, 0f)));
+        time += 1000;
+        assertFalse(mGate.accept(mFix.set(far, -99.13, time, 5f, false, 0f)));
+    }
+
+    @Test
+    public void reanchorsAfterGap() {
+        assertTrue(mGate.accept(mFix.set(19.43, -99.13, 0, 5f, false, 0f)));
+        assertTrue(mGate.accept(mFix.set(19.43 + 1000 * HUNDRED_METERS, -99.13,
+                SpeedGate.MAX_GAP_MILLIS + 1, 5f, false, 0f)));
+    }
+
+    @Test
+    public void resetForgetsPrevious() {
+        assertTrue(mGate.accept(mFix.set(19.43, -99.13, 0, 5f, false, 0f)));
+        mGate.reset();
+        assertTrue(mGate.accept(mFix.set(19.43 + 100 * HUNDRED_METERS, -99.13, 1000, 5f, false, 0f)));
+    }
+}
@@ -0,0 +1,72 @@
+package com.dmovil.appgeolocalizacion;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.junit.Assert.assertEquals;
+
+public class TraceReaderTest {
+
+    static final String GPX = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<gpx version=\"1.1\" creator=\"test\">\n"
+            + "  <wpt lat=\"19.4326\" lon=\"-99.1332\"><name>Inicio</name></wpt>\n"
+            + "  <trk><trkseg>\n"
+            + "    <trkpt lat=\"19.4330\" lon=\"-99.1330\"><ele>2240</ele>"
+            + "<time>2021-10-18T10:15:00Z</time></trkpt>\n"
+            + "    <trkpt lon='-99.1328' lat='19.4332'>\n"
+            + "      <time>2021-10-18T10:15:00.5Z</time>\n"
+            + "    </trkpt>\n"
+            + "    <trkpt lat=\"19.4334\" lon=\"-99.1326\"/>\n"
+            + "    <trkpt lat=\"19.4336\" lon=\"-99.1324\"><time>2021-10-18T10:15:02Z</time></trkpt>\n"
+            + "  </trkseg></trk>\n"
+            + "</gpx>\n";
+
+    static final String NMEA = "$GPGGA,101500.00,1925.9560,N,09907.9920,W,1,08,0.9,2240.0,M,,M,,*50\n"
+            + "$GNRMC,101500.00,A,1925.9560,N,09907.9920,W,0.0,,181021,,,A*72\n"
+            + "$GNRMC,101500.50,A,1925.9570,N,09907.9930,W,1.0,,181021,,,A*76\n"
+            //Sin posicion valida (V).
+            + "$GNRMC,101501.50,V,1925.9580,N,09907.9940,W,1.0,,181021,,,N*67\n"
+            //Checksum incorrecto.
+            + "$GNRMC,101501.75,A,1925.9580,N,09907.9940,W,1.0,,181021,,,A*00\n"
+            + "$GNRMC,101502.00,A,3351.0000,S,15112.0000,E,10.0,,181021,,,A*4C\n"
+            + "$GPRMC,123519,A,4807.038,N,01131.000,E,022.4,084.4,230394,003.1,W*6A\n";
+
+    @Test
+    public void readsGpxPointsWithTimes() throws IOException {
+        TrackBuffer track = new TrackBuffer();
+        TraceReader.readGpx(new BufferedReader(new StringReader(GPX)), track);
+
+        assertEquals(5, track.size());
+        assertEquals(19.4326, track.getLatitude(0), 1e-9);
+        assertEquals(-99.1332, track.getLongitude(0), 1e-9);
+        assertEquals(0L, track.getTime(0));
+        assertEquals(1634552100000L, track.getTime(1));
+        assertEquals(19.4332, track.getLatitude(2), 1e-9);
+        assertEquals(-99.1328, track.getLongitude(2), 1e-9);
+        assertEquals(1634552100500L, track.getTime(2));
+        assertEquals(0L, track.getTime(3));
+        assertEquals(1634552102000L, track.getTime(4));
+    }
+
+    @Test
+    public void readsValidRmcSentencesOnly() throws IOException {
+        TrackBuffer track = new TrackBuffer();
+        TraceReader.readNmea(new BufferedReader(new StringReader(NMEA)), track);
+
+        assertEquals(4, track.size());
+        assertEquals(19 + 25.9560 / 60, track.getLatitude(0), 1e-9);
+        assertEquals(-(99 + 7.9920 / 60), track.getLongitude(0), 1e-9);
+        assertEquals(1634552100000L, track.getTime(0));
+        assertEquals(1634552100500L, track.getTime(1));
+        assertEquals(0.514444f, track.getSpeed(1), 1e-6f);
+        assertEquals(-(33 + 51.0 / 60), track.getLatitude(2), 1e-9);
+        assertEquals(151 + 12.0 / 60, track.getLongitude(2), 1e-9);
+        assertEquals(1634552102000L, track.getTime(2));
+        //Año de dos digitos anterior a 80: siglo XX.
+        assertEquals(764426119000L, track.getTime(3));
+        assertEquals(22.4f * 0.514444f, track.getSpeed(3), 1e-4f);
+    }
+}
@@ -0,0 +1,122 @@
+package com.dmovil.appgeolocalizacion;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+
+public class TrackExporterTest {
+
+    //2021-10-18T12:34:56Z
+    private static final long START = 1634560496000L;
+
+    private File mDirectory;
+    private TrackLog mLog;
+
+    @Before
+    public void setUp() throws IOException {
+        mDirectory = Files.createTempDirectory("trackexporter-test").toFile();
+        mLog = new TrackLog(mDirectory);
+        mLog.append(19.4326, -99.1332, START, 5f);
+        mLog.append(19.4327, -99.1331, START + 1250, 5f);
+        mLog.append(19.4328, -99.1330, START + 2000, 5f);
+        mLog.flush();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        mLog.close();
+        File[] files = mDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        mDirectory.delete();
+    }
+
+    @Test
+    public void exportsGpx() throws IOException {
+        StringWriter writer = new StringWriter();
+
+        long written = new TrackExporter(TrackExporter.FORMAT_GPX).export(mLog, writer);
+
+        assertEquals(3, written);
+        assertEquals("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<gpx version=\"1.1\" creator=\"AppGeolocalizacion\""
+                + " xmlns=\"http://www.topografix.com/GPX/1/1\">\n"
+                + "<trk><name>Recorrido</name><trkseg>\n"
+                + "<trkpt lat=\"19.4326000\" lon=\"-99.1332000\">"
+                + "<time>2021-10-18T12:34:56Z</time></trkpt>\n"
+                + "<trkpt lat=\"19.4327000\" lon=\"-99.1331000\">"
+                + "<time>2021-10-18T12:34:57.250Z</time></trkpt>\n"
+                + "<trkpt lat=\"19.4328000\" lon=\"-99.1330000\">"
+                + "<time>2021-10-18T12:34:58Z</time></trkpt>\n"
+                + "</trkseg></trk>\n</gpx>\n", writer.toString());
+    }
+
+    @Test
+    public void exportsGeoJson() throws IOException {
+        StringWriter writer = new StringWriter();
+
+        long written = new TrackExporter(TrackExporter.FORMAT_GEOJSON).export(mLog, writer);
+
+        assertEquals(3, written);
+        assertEquals(geoJson("[-99.1332000,19.4326000],\n"
+                        + "[-99.1331000,19.4327000],\n"
+                        + "[-99.1330000,19.4328000]",
+                ",\"startTime\":\"2021-10-18T12:34:56Z\",\"endTime\":\"2021-10-18T12:34:58Z\"", 3),
+                writer.toString());
+    }
+
+    @Test
+    public void timeRangeLimitsPoints() throws IOException {
+        StringWriter writer = new StringWriter();
+
+        long written = new TrackExporter(TrackExporter.FORMAT_GEOJSON)
+                .setTimeRange(START + 1000, START + 1500).export(mLog, writer);
+
+        assertEquals(1, written);
+        assertEquals(geoJson("[-99.1331000,19.4327000]",
+                ",\"startTime\":\"2021-10-18T12:34:57.250Z\",\"endTime\":\"2021-10-18T12:34:57.250Z\"",
+                1), writer.toString());
+    }
+
+    @Test
+    public void toleranceDropsPointsOnTheLine() throws IOException {
+        StringWriter writer = new StringWriter();
+
+        //El punto del medio esta sobre la recta entre el primero y el ultimo.
+        long written = new TrackExporter(TrackExporter.FORMAT_GEOJSON)
+                .setTolerance(5).export(mLog, writer);
+
+        assertEquals(2, written);
+        assertEquals(geoJson("[-99.1332000,19.4326000],\n[-99.1330000,19.4328000]",
+                ",\"startTime\":\"2021-10-18T12:34:56Z\",\"endTime\":\"2021-10-18T12:34:58Z\"", 2),
+                writer.toString());
+    }
+
+    @Test
+    public void emptyRangeHasNoTimes() throws IOException {
+        StringWriter writer = new StringWriter();
+
+        long written = new TrackExporter(TrackExporter.FORMAT_GEOJSON)
+                .setTimeRange(0, START - 1).export(mLog, writer);
+
+        assertEquals(0, written);
+        assertEquals(geoJson("", "", 0), writer.toString());
+    }
+
+    private static String geoJson(String coordinates, String times, int points) {
+        return "{\"type\":\"FeatureCollection\",\"features\":[{\"type\":\"Feature\","
+                + "\"geometry\":{\"type\":\"LineString\",\"coordinates\":[\n"
+                + coordinates
+                + "\n]},\"properties\":{\"points\":" + points + times + "}}]}\n";
+    }
+}
@@ -0,0 +1,192 @@
+package com.dmovil.appgeolocalizacion;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TrackLogTest {
+
+    private File mDirectory;
+
+    @Before
+    public void setUp() throws IOException {
+        mDirectory = Files.createTempDirectory("tracklog-test").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = mDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        mDirectory.delete();
+    }
+
+    @Test
+    public void replayReturnsAppendedPoints() throws IOException {
+        TrackLog log = new TrackLog(mDirectory);
+        for (int i = 0; i < 100; i++) {
+            log.append(latitude(i), longitude(i), time(i), 4.5f);
+        }
+        log.close();
+
+        List<double[]> points = replay(new TrackLog(mDirectory));
+        assertEquals(100, points.size());
+        for (int i = 0; i < 100; i++) {
+            assertPoint(i, points.get(i));
+            assertEquals(4.5, points.get(i)[3], 1e-6);
+        }
+    }
+
+    @Test
+    public void truncatedLastRecordIsDroppedOnRecovery() throws IOException {
+        TrackLog log = new TrackLog(mDirectory);
+        for (int i = 0; i < 10; i++) {
+            log.append(latitude(i), longitude(i), time(i), 5f);
+        }
+        log.close();
+        //Simula un proceso detenido a mitad de la escritura del ultimo registro.
+        File segment = onlySegment();
+        RandomAccessFile file = new RandomAccessFile(segment, "rw");
+        file.setLength(file.length() - 2);
+        file.close();
+
+        TrackLog recovered = new TrackLog(mDirectory);
+        recovered.append(latitude(10), longitude(10), time(10), 5f);
+        recovered.close();
+
+        List<double[]> points = replay(new TrackLog(mDirectory));
+        assertEquals(10, points.size());
+        for (int i = 0; i < 9; i++) {
+            assertPoint(i, points.get(i));
+        }
+        assertPoint(10, points.get(9));
+    }
+
+    @Test
+    public void corruptedRecordStopsReplay() throws IOException {
+        TrackLog log = new TrackLog(mDirectory);
+        for (int i = 0; i < 10; i++) {
+            log.append(latitude(i), longitude(i), time(i), 5f);
+        }
+        log.close();
+        //Se cambia un byte de la carga del sexto registro; su CRC ya no coincide.
+        File segment = onlySegment();
+        List<double[]> before = replay(new TrackLog(mDirectory));
+        RandomAccessFile file = new RandomAccessFile(segment, "rw");
+        long offset = recordOffset(file, 5) + 2;
+        file.seek(offset);
+        int value = file.read();
+        file.seek(offset);
+        file.write(value ^ 0x10);
+        file.close();
+
+        List<double[]> points = replay(new TrackLog(mDirectory));
+        assertEquals(10, before.size());
+        assertEquals(5, points.size());
+        for (int i = 0; i < 5; i++) {
+            assertPoint(i, points.get(i));
+        }
+    }
+
+    @Test
+    public void rolloverKeepsAllPointsInOrder() throws IOException {
+        TrackLog log = new TrackLog(mDirectory);
+        int count = 150000;
+        for (int i = 0; i < count; i++) {
+            log.append(latitude(i), longitude(i), time(i), 5f);
+        }
+        log.close();
+        assertTrue(mDirectory.listFiles().length > 1);
+
+        //Despues de reabrir se sigue escribiendo en el ultimo segmento.
+        TrackLog reopened = new TrackLog(mDirectory);
+        reopened.append(latitude(count), longitude(count), time(count), 5f);
+        List<double[]> points = replay(reopened);
+        reopened.close();
+        assertEquals(count + 1, points.size());
+        for (int i = 0; i <= count; i += 997) {
+            assertPoint(i, points.get(i));
+        }
+        assertPoint(count, points.get(count));
+    }
+
+    @Test
+    public void batchIsWrittenOnEndBatch() throws IOException {
+        TrackLog log = new TrackLog(mDirectory);
+        log.beginBatch();
+        for (int i = 0; i < 20; i++) {
+            log.append(latitude(i), longitude(i), time(i), 5f);
+        }
+        long sizeDuringBatch = fileBytes();
+        log.endBatch();
+        assertTrue(fileBytes() > sizeDuringBatch);
+        assertEquals(20, replay(log).size());
+        log.close();
+    }
+
+    private static double latitude(int i) {
+        return 19.4326 + i * 1e-5;
+    }
+
+    private static double longitude(int i) {
+        return -99.1332 - i * 2e-5 + (i % 7) * 1e-6;
+    }
+
+    private static long time(int i) {
+        return 1634558400000L + i * 1000L;
+    }
+
+    private static void assertPoint(int i, double[] point) {
+        assertEquals(latitude(i), point[0], 1e-7);
+        assertEquals(longitude(i), point[1], 1e-7);
+        assertEquals(time(i), (long) point[2]);
+    }
+
+    private long fileBytes() {
+        long total = 0;
+        for (File file : mDirectory.listFiles()) {
+            total += file.length();
+        }
+        return total;
+    }
+
+    private File onlySegment() {
+        File[] files = mDirectory.listFiles();
+        assertEquals(1, files.length);
+        return files[0];
+    }
+
+    private static long recordOffset(RandomAccessFile file, int index) throws IOException {
+        //Salta el encabezado y los registros anteriores: largo (1 byte) + carga + CRC (4).
+        long offset = 4;
+        for (int i = 0; i < index; i++) {
+            file.seek(offset);
+            offset += 1 + file.read() + 4;
+        }
+        return offset;
+    }
+
+    private static List<double[]> replay(TrackLog log) throws IOException {
+        final List<double[]> points = new ArrayList<>();
+        log.replay(new TrackLog.Visitor() {
+            @Override
+            public void visit(double latitude, double longitude, long time, float accuracy) {
+                points.add(new double[]{latitude, longitude, time, accuracy});
+            }
+        });
+        return points;
+    }
+}
@@ -0,0 +1,117 @@
+package com.dmovil.appgeolocalizacion;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class TripStatsTest {
+
+    //Las ubicaciones reproducidas no llegan a TripStats: LocationRepository.deliver las excluye
+    // antes de llamar a add, por lo que aqui solo se prueba la acumulacion.
+
+    //Grados de latitud por cada 10 m.
+    private static final double TEN_METERS = 10 / GeoMath.METERS_PER_DEGREE;
+
+    @Test
+    public void accumulatesDistanceAndMovingTime() {
+        TripStats stats = new TripStats();
+        for (int i = 0; i < 11; i++) {
+            stats.add(19.43 + i * TEN_METERS, -99.13, i * 1000L, false, 0, false, 0f);
+        }
+
+        TripStats.Snapshot snapshot = stats.snapshot();
+
+        assertEquals(11, snapshot.fixCount);
+        assertEquals(100, snapshot.distance, 0.01);
+        assertEquals(10000, snapshot.movingTimeMillis);
+        assertEquals(10, snapshot.averageSpeed, 0.001);
+        assertEquals(10, snapshot.maxSpeed, 0.001);
+        assertEquals(19.43, snapshot.south, 0);
+        assertEquals(19.43 + 10 * TEN_METERS, snapshot.north, 1e-12);
+    }
+
+    @Test
+    public void slowDriftIsNotMovement() {
+        //0.2 m por segundo es ruido de una ubicación detenida.
+        TripStats stats = new TripStats();
+        for (int i = 0; i < 10; i++) {
+            stats.add(19.43 + i * TEN_METERS / 50, -99.13, i * 1000L, false, 0, false, 0f);
+        }
+
+        TripStats.Snapshot snapshot = stats.snapshot();
+
+        assertEquals(10, snapshot.fixCount);
+        assertEquals(0, snapshot.distance, 0);
+        assertEquals(0, snapshot.movingTimeMillis);
+        assertEquals(0, snapshot.averageSpeed, 0);
+    }
+
+    @Test
+    public void longGapIsNotMovement() {
+        TripStats stats = new TripStats();
+        stats.add(19.43, -99.13, 0, false, 0, false, 0f);
+        stats.add(19.43 + TEN_METERS, -99.13, 1000, false, 0, false, 0f);
+        stats.add(19.43 + 100 * TEN_METERS, -99.13, 1000 + TripStats.MAX_GAP_MILLIS + 1,
+                false, 0, false, 0f);
+
+        TripStats.Snapshot snapshot = stats.snapshot();
+
+        assertEquals(10, snapshot.distance, 0.01);
+        assertEquals(1000, snapshot.movingTimeMillis);
+    }
+
+    @Test
+    public void repeatedAndOutOfOrderFixesAreIgnored() {
+        TripStats stats = new TripStats();
+        stats.add(19.43, -99.13, 1000, false, 0, false, 0f);
+        stats.add(19.43 + TEN_METERS, -99.13, 1000, false, 0, false, 0f);
+        stats.add(19.43 + TEN_METERS, -99.13, 500, false, 0, false, 0f);
+        stats.add(19.43 + TEN_METERS, -99.13, 2000, false, 0, false, 0f);
+
+        TripStats.Snapshot snapshot = stats.snapshot();
+
+        assertEquals(2, snapshot.fixCount);
+        assertEquals(10, snapshot.distance, 0.01);
+        assertEquals(1000, snapshot.movingTimeMillis);
+    }
+
+    @Test
+    public void reportedSpeedIsUsedForMaximum() {
+        TripStats stats = new TripStats();
+        stats.add(19.43, -99.13, 0, false, 0, true, 9f);
+        stats.add(19.43 + TEN_METERS, -99.13, 1000, false, 0, true, 12.5f);
+
+        assertEquals(12.5, stats.snapshot().maxSpeed, 1e-6);
+    }
+
+    @Test
+    public void elevationGainIgnoresSmallChanges() {
+        TripStats stats = new TripStats();
+        double[] altitudes = {100, 102, 101, 103, 108, 104, 100, 106};
+        for (int i = 0; i < altitudes.length; i++) {
+            stats.add(19.43 + i * TEN_METERS, -99.13, i * 1000L, true, altitudes[i], false, 0f);
+        }
+
+        //Sube 8 m hasta 108, baja a 100 y sube 6 m; los cambios de 2 o 3 m no cuentan.
+        assertEquals(14, stats.snapshot().elevationGain, 1e-9);
+    }
+
+    @Test
+    public void resetStartsNewTrip() {
+        TripStats stats = new TripStats();
+        stats.add(19.43, -99.13, 0, true, 100, false, 0f);
+        stats.add(19.43 + TEN_METERS, -99.13, 1000, true, 120, false, 0f);
+
+        stats.reset();
+        stats.add(20.0, -100.0, 5000, true, 50, false, 0f);
+        stats.add(20.0 + TEN_METERS, -100.0, 6000, true, 52, false, 0f);
+
+        TripStats.Snapshot snapshot = stats.snapshot();
+        assertEquals(2, snapshot.fixCount);
+        assertEquals(10, snapshot.distance, 0.01);
+        assertEquals(1000, snapshot.movingTimeMillis);
+        assertEquals(0, snapshot.elevationGain, 0);
+        assertEquals(20.0, snapshot.south, 0);
+        assertEquals(-100.0, snapshot.west, 0);
+    }
+}
@@ -0,0 +1,65 @@
+package com.dmovil.appgeolocalizacion;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CoordinateFormatBenchmark {
+
+    //Formateo de las coordenadas que se muestran con cada ubicación: las versiones con
+    // String.valueOf y String.format que usaban updateLocationUI y onMarkerClick contra
+    // CoordinateFormat, que escribe en un arreglo reutilizado.
+    private TrackBuffer mTrack;
+    private int mIndex;
+    private final char[] mBuffer = new char[CoordinateFormat.MAX_LENGTH];
+    private final StringBuilder mBuilder = new StringBuilder(64);
+
+    @Setup
+    public void setUp() {
+        mTrack = Traces.walk(1024, 1);
+    }
+
+    private int next() {
+        mIndex = (mIndex + 1) & 1023;
+        return mIndex;
+    }
+
+    @Benchmark
+    public String stringValueOf() {
+        return String.valueOf(mTrack.getLatitude(next()));
+    }
+
+    @Benchmark
+    public String stringFormat() {
+        int i = next();
+        return String.format(Locale.getDefault(), "Ubicacion Actual\nLatitud = %f\nLongitud= %f",
+                mTrack.getLatitude(i), mTrack.getLongitude(i));
+    }
+
+    @Benchmark
+    public int coordinateFormat() {
+        return CoordinateFormat.format(mTrack.getLatitude(next()),
+                CoordinateFormat.DISPLAY_DECIMALS, mBuffer);
+    }
+
+    @Benchmark
+    public int coordinateFormatAppend() {
+        int i = next();
+        mBuilder.setLength(0);
+        mBuilder.append("Ubicacion Actual\nLatitud = ");
+        CoordinateFormat.append(mBuilder, mTrack.getLatitude(i), CoordinateFormat.DISPLAY_DECIMALS);
+        mBuilder.append("\nLongitud= ");
+        CoordinateFormat.append(mBuilder, mTrack.getLongitude(i), CoordinateFormat.DISPLAY_DECIMALS);
+        return mBuilder.length();
+    }
+}
@@ -0,0 +1,47 @@
+package com.dmovil.appgeolocalizacion;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class FilterChainBenchmark {
+
+    //La misma cadena de filtros que aplica LocationRepository, con un Fix reutilizado.
+    private static final int POINTS = 4096;
+
+    private TrackBuffer mTrack;
+    private FilterChain mChain;
+    private final Fix mFix = new Fix();
+    private int mIndex;
+
+    @Setup
+    public void setUp() {
+        mTrack = Traces.walk(POINTS, 3);
+        mChain = new FilterChain(
+                new AccuracyGate(100f),
+                new SpeedGate(70f),
+                new KalmanFilter(3.0));
+    }
+
+    @Benchmark
+    public boolean accept() {
+        int i = mIndex;
+        mIndex = (mIndex + 1) & (POINTS - 1);
+        if (i == 0) {
+            //Al volver al inicio del recorrido el tiempo retrocede, asi que se olvida el estado.
+            mChain.reset();
+        }
+        mFix.set(mTrack.getLatitude(i), mTrack.getLongitude(i), mTrack.getTime(i),
+                mTrack.getAccuracy(i), true, mTrack.getSpeed(i));
+        return mChain.accept(mFix);
+    }
+}
@@ -0,0 +1,48 @@
+package com.dmovil.appgeolocalizacion;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class GeoMathBenchmark {
+
+    //Distancia entre ubicaciones consecutivas: la aproximacion equirectangular que usan los
+    // filtros y el simplificador contra la formula de haversine.
+    private TrackBuffer mTrack;
+    private int mIndex;
+
+    @Setup
+    public void setUp() {
+        mTrack = Traces.walk(1024, 2);
+    }
+
+    @Benchmark
+    public double equirectangular() {
+        int i = mIndex;
+        mIndex = (mIndex + 1) & 1023;
+        return GeoMath.equirectangularDistance(mTrack.getLatitude(i), mTrack.getLongitude(i),
+                mTrack.getLatitude(mIndex), mTrack.getLongitude(mIndex));
+    }
+
+    @Benchmark
+    public double haversine() {
+        int i = mIndex;
+        mIndex = (mIndex + 1) & 1023;
+        double lat1 = Math.toRadians(mTrack.getLatitude(i));
+        double lat2 = Math.toRadians(mTrack.getLatitude(mIndex));
+        double dLat = lat2 - lat1;
+        double dLon = Math.toRadians(mTrack.getLongitude(mIndex) - mTrack.getLongitude(i));
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(lat1) * Math.cos(lat2) * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * GeoMath.EARTH_RADIUS * Math.asin(Math.sqrt(a));
+    }
+}
@@ -0,0 +1,46 @@
+package com.dmovil.appgeolocalizacion;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class GeocodeCacheBenchmark {
+
+    //Busqueda de direccion en la cache por teselas de GeocodingPipeline (solo el nivel en
+    // memoria, que es el que se consulta con cada ubicación): calcular la tesela y consultar.
+    private TrackBuffer mTrack;
+    private TileCache<String> mCache;
+    private int mIndex;
+
+    @Setup
+    public void setUp() {
+        mTrack = Traces.walk(1024, 5);
+        mCache = new TileCache<>(Geohash.DEFAULT_BITS, 256, null, 0, null);
+        for (int i = 0; i < 1024; i++) {
+            mCache.put(mCache.tileKey(mTrack.getLatitude(i), mTrack.getLongitude(i)), "Calle " + i);
+        }
+    }
+
+    @Benchmark
+    public long encode() {
+        mIndex = (mIndex + 1) & 1023;
+        return Geohash.encode(mTrack.getLatitude(mIndex), mTrack.getLongitude(mIndex));
+    }
+
+    @Benchmark
+    public String lookup() {
+        //Las ubicaciones consecutivas caen casi siempre en la misma celda, asi que este es el
+        // caso comun de un recorrido real: un acierto en la cache.
+        mIndex = (mIndex + 1) & 1023;
+        return mCache.getCached(mCache.tileKey(mTrack.getLatitude(mIndex), mTrack.getLongitude(mIndex)));
+    }
+}
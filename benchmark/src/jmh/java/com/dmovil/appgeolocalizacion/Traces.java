@@ -0,0 +1,32 @@
+package com.dmovil.appgeolocalizacion;
+
+import java.util.Random;
+
+final class Traces {
+
+    private Traces() {
+    }
+
+    static TrackBuffer walk(int points, long seed) {
+        //Recorrido sintetico y repetible: un punto por segundo a velocidad de auto en la
+        // Ciudad de Mexico, con cambios de rumbo y ruido de algunos metros como el de un GPS.
+        Random random = new Random(seed);
+        TrackBuffer track = new TrackBuffer(points, points);
+        double latitude = 19.4326;
+        double longitude = -99.1332;
+        double heading = 0;
+        long time = 1634558400000L;
+        for (int i = 0; i < points; i++) {
+            heading += random.nextGaussian() * 0.2;
+            double speed = 12 + random.nextGaussian();
+            latitude += Math.cos(heading) * speed / GeoMath.METERS_PER_DEGREE;
+            longitude += Math.sin(heading) * speed / GeoMath.metersPerDegreeLongitude(latitude);
+            double noise = 4 / GeoMath.METERS_PER_DEGREE;
+            track.append(latitude + random.nextGaussian() * noise,
+                    longitude + random.nextGaussian() * noise,
+                    time, 5 + random.nextFloat() * 10, (float) speed);
+            time += 1000;
+        }
+        return track;
+    }
+}
@@ -0,0 +1,56 @@
+package com.dmovil.appgeolocalizacion;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TrackBenchmark {
+
+    //Trabajo del recorrido en el mapa por cada ubicación: agregar al buffer (que ya llego a su
+    // capacidad maxima y sobrescribe el punto mas viejo) y simplificar en linea.
+    private static final int POINTS = 4096;
+
+    private TrackBuffer mTrack;
+    private TrackBuffer mBuffer;
+    private TrackSimplifier mSimplifier;
+    private int mIndex;
+
+    @Setup
+    public void setUp() {
+        mTrack = Traces.walk(POINTS, 4);
+        mBuffer = new TrackBuffer(64, 1024);
+        mSimplifier = new TrackSimplifier(TrackSimplifier.toleranceForZoom(16f, 19.43));
+    }
+
+    private int next() {
+        mIndex = (mIndex + 1) & (POINTS - 1);
+        return mIndex;
+    }
+
+    @Benchmark
+    public int append() {
+        int i = next();
+        mBuffer.append(mTrack.getLatitude(i), mTrack.getLongitude(i), mTrack.getTime(i),
+                mTrack.getAccuracy(i), mTrack.getSpeed(i));
+        return mBuffer.size();
+    }
+
+    @Benchmark
+    public int simplify() {
+        int i = next();
+        if (i == 0) {
+            mSimplifier.reset();
+        }
+        mSimplifier.add(mTrack.getLatitude(i), mTrack.getLongitude(i));
+        return mSimplifier.getVertexCount();
+    }
+}
@@ -0,0 +1,99 @@
+package com.dmovil.appgeolocalizacion;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TrackLogBenchmark {
+
+    //Serializacion del registro en disco: append por ubicación (incluye las escrituras cada
+    // DEFAULT_FLUSH_RECORDS) y lectura completa de un recorrido de una hora.
+    private static final int POINTS = 4096;
+    private static final int REPLAY_POINTS = 3600;
+
+    private TrackBuffer mTrack;
+    private File mDirectory;
+    private File mReplayDirectory;
+    private TrackLog mLog;
+    private TrackLog mReplayLog;
+    private int mIndex;
+    private long mTime;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() throws IOException {
+        mTrack = Traces.walk(POINTS, 6);
+        mReplayDirectory = Files.createTempDirectory("tracklog-replay").toFile();
+        mReplayLog = new TrackLog(mReplayDirectory);
+        for (int i = 0; i < REPLAY_POINTS; i++) {
+            mReplayLog.append(mTrack.getLatitude(i), mTrack.getLongitude(i), mTrack.getTime(i),
+                    mTrack.getAccuracy(i));
+        }
+        mReplayLog.flush();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDownTrial() throws IOException {
+        mReplayLog.close();
+        delete(mReplayDirectory);
+    }
+
+    @Setup(Level.Iteration)
+    public void setUpIteration() throws IOException {
+        //Cada iteracion escribe en un directorio nuevo para no llenar el disco.
+        mDirectory = Files.createTempDirectory("tracklog").toFile();
+        mLog = new TrackLog(mDirectory);
+        mTime = mTrack.getTime(0);
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDownIteration() throws IOException {
+        mLog.close();
+        delete(mDirectory);
+    }
+
+    @Benchmark
+    public void append() throws IOException {
+        int i = mIndex;
+        mIndex = (mIndex + 1) & (POINTS - 1);
+        //El tiempo siempre avanza, como en un recorrido real.
+        mTime += 1000;
+        mLog.append(mTrack.getLatitude(i), mTrack.getLongitude(i), mTime, mTrack.getAccuracy(i));
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void replay(final Blackhole blackhole) throws IOException {
+        mReplayLog.replay(new TrackLog.Visitor() {
+            @Override
+            public void visit(double latitude, double longitude, long time, float accuracy) {
+                blackhole.consume(latitude);
+                blackhole.consume(longitude);
+            }
+        });
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}